@@ -0,0 +1,278 @@
+package annotations.processing;
+
+import annotations.PersistedEntity;
+import annotations.PersistedField;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates {@code Wrapper} implementation for every class marked with {@code PersistedEntity}.
+ * Generated wrapper extends {@code DefaultWrapper} and reads rows with hardcoded
+ * typed {@code ResultSet} getters and setter calls for fields marked with {@code PersistedField}.
+ * It is named after the entity: {@code Doc_Wrapper} for {@code Doc},
+ * {@code Outer_Inner_Wrapper} for nested class {@code Outer.Inner},
+ * and is picked up at runtime by {@code WrapperFactory}.
+ *
+ * @author Belkin Sergei
+ */
+@SupportedAnnotationTypes( "annotations.PersistedEntity" )
+public class PersistedEntityProcessor extends AbstractProcessor {
+
+    public static final String SUFFIX = "_Wrapper";
+
+    /**
+     * Expression that reads a column by {@code rs} and index {@code c},
+     * {@code %s} is replaced with index variable.
+     */
+    private static final Map<String, String> READERS = new HashMap<>();
+
+    static {
+        READERS.put( "java.lang.Short", "rs.getShort( %s )" );
+        READERS.put( "short", "rs.getShort( %s )" );
+        READERS.put( "java.lang.Integer", "rs.getInt( %s )" );
+        READERS.put( "int", "rs.getInt( %s )" );
+        READERS.put( "java.lang.Long", "rs.getLong( %s )" );
+        READERS.put( "long", "rs.getLong( %s )" );
+        READERS.put( "java.lang.Double", "rs.getDouble( %s )" );
+        READERS.put( "double", "rs.getDouble( %s )" );
+        READERS.put( "java.lang.Boolean", "rs.getBoolean( %s )" );
+        READERS.put( "boolean", "rs.getBoolean( %s )" );
+        READERS.put( "java.math.BigDecimal", "rs.getBigDecimal( %s )" );
+        READERS.put( "java.lang.String", "rs.getString( %s )" );
+        READERS.put( "java.time.LocalDate", "toLocalDate( rs.getDate( %s ) )" );
+        READERS.put( "java.time.LocalDateTime", "toLocalDateTime( rs.getTimestamp( %s ) )" );
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process( Set<? extends TypeElement> annotations, RoundEnvironment roundEnv ) {
+        for( Element e : roundEnv.getElementsAnnotatedWith( PersistedEntity.class ) ) {
+            if( e.getKind() != ElementKind.CLASS ) continue;
+            TypeElement type = ( TypeElement ) e;
+            if( type.getModifiers().contains( Modifier.ABSTRACT )
+                    || type.getModifiers().contains( Modifier.PRIVATE )
+                    || type.getNestingKind().isNested() && !type.getModifiers().contains( Modifier.STATIC ) ) {
+                warn( type, "Wrapper is not generated: class must be concrete, non private and static." );
+                continue;
+            }
+            if( !hasDefaultConstructor( type ) ) {
+                warn( type, "Wrapper is not generated: class must have non private constructor without parameters." );
+                continue;
+            }
+            try {
+                generate( type );
+            } catch( IOException ex ) {
+                processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR,
+                        "Can't generate wrapper: " + ex.getMessage(), type );
+            }
+        }
+        return false;
+    }
+
+    private void warn( Element e, String msg ) {
+        processingEnv.getMessager().printMessage( Diagnostic.Kind.WARNING, msg, e );
+    }
+
+    private static boolean hasDefaultConstructor( TypeElement type ) {
+        for( ExecutableElement c : ElementFilter.constructorsIn( type.getEnclosedElements() ) ) {
+            if( c.getParameters().isEmpty() && !c.getModifiers().contains( Modifier.PRIVATE ) )
+                return true;
+        }
+        return false;
+    }
+
+    private static String capitalize( String name ) {
+        return name.substring( 0, 1 ).toUpperCase() + name.substring( 1 );
+    }
+
+    /**
+     * @return generated simple name, e.g. Outer_Inner_Wrapper.
+     */
+    private static String getWrapperName( TypeElement type ) {
+        StringBuilder sb = new StringBuilder( type.getSimpleName() );
+        Element enclosing = type.getEnclosingElement();
+        while( enclosing.getKind().isClass() || enclosing.getKind().isInterface() ) {
+            sb.insert( 0, enclosing.getSimpleName() + "_" );
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return sb.append( SUFFIX ).toString();
+    }
+
+    /**
+     * Collect fields marked with {@code PersistedField} including inherited ones,
+     * fields of subclass hide fields of super classes.
+     */
+    private Map<String, VariableElement> getPersistedFields( TypeElement type ) {
+        Map<String, VariableElement> res = new LinkedHashMap<>();
+        TypeElement loop = type;
+        while( loop != null && !loop.getQualifiedName().contentEquals( "java.lang.Object" ) ) {
+            for( VariableElement field : ElementFilter.fieldsIn( loop.getEnclosedElements() ) ) {
+                PersistedField pf = field.getAnnotation( PersistedField.class );
+                if( pf != null && !res.containsKey( field.getSimpleName().toString() ) ) {
+                    if( pf.value().trim().isEmpty() ) {
+                        warn( field, "Annotation value is empty, field is skipped." );
+                    } else {
+                        res.put( field.getSimpleName().toString(), field );
+                    }
+                }
+            }
+            TypeMirror sup = loop.getSuperclass();
+            loop = sup.getKind() == TypeKind.DECLARED
+                    ? ( TypeElement ) ( ( DeclaredType ) sup ).asElement() : null;
+        }
+        return res;
+    }
+
+    private ExecutableElement findSetter( TypeElement type, VariableElement field ) {
+        String name = "set" + capitalize( field.getSimpleName().toString() );
+        for( ExecutableElement m : ElementFilter.methodsIn(
+                processingEnv.getElementUtils().getAllMembers( type ) ) ) {
+            if( m.getSimpleName().contentEquals( name ) && m.getParameters().size() == 1
+                    && !m.getModifiers().contains( Modifier.PRIVATE )
+                    && !m.getModifiers().contains( Modifier.STATIC )
+                    && processingEnv.getTypeUtils().isSameType(
+                            m.getParameters().get( 0 ).asType(), field.asType() ) )
+                return m;
+        }
+        return null;
+    }
+
+    private void generate( TypeElement type ) throws IOException {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf( type );
+        String packageName = pkg.isUnnamed() ? null : pkg.getQualifiedName().toString();
+        String wrapperName = getWrapperName( type );
+        String entityName = type.getQualifiedName().toString();
+
+        List<String> labels = new ArrayList<>();
+        List<String> statements = new ArrayList<>();
+        for( VariableElement field : getPersistedFields( type ).values() ) {
+            String fieldType = processingEnv.getTypeUtils().erasure( field.asType() ).toString();
+            String reader = READERS.get( fieldType );
+            ExecutableElement setter = findSetter( type, field );
+            if( reader == null || setter == null ) {
+                warn( field, reader == null
+                        ? "Type " + fieldType + " is not supported, field is skipped."
+                        : "There is no setter, field is skipped." );
+                continue;
+            }
+            String idx = "c[" + labels.size() + "]";
+            labels.add( field.getAnnotation( PersistedField.class ).value() );
+            statements.add( "if( " + idx + " > 0 ) result." + setter.getSimpleName()
+                    + "( " + String.format( reader, idx ) + " );" );
+        }
+
+        String qualifiedName = packageName == null ? wrapperName : packageName + "." + wrapperName;
+        JavaFileObject file = processingEnv.getFiler().createSourceFile( qualifiedName, type );
+        try( PrintWriter out = new PrintWriter( file.openWriter() ) ) {
+            if( packageName != null ) {
+                out.println( "package " + packageName + ";" );
+                out.println();
+            }
+            out.println( "import data.wrappers.DefaultWrapper;" );
+            out.println( "import java.lang.ref.WeakReference;" );
+            out.println( "import java.sql.ResultSet;" );
+            out.println( "import java.sql.SQLException;" );
+            out.println();
+            out.println( "/**" );
+            out.println( " * Wrapper of {@code " + entityName + "}." );
+            out.println( " * Generated by {@code " + getClass().getName() + "}, do not edit." );
+            out.println( " */" );
+            out.println( "public class " + wrapperName + "<C extends data.entities.IEntity>" );
+            out.println( "        extends DefaultWrapper<" + entityName + ", C> {" );
+            out.println();
+            out.println( "    private static final String[] LABELS = {" );
+            for( String label : labels )
+                out.println( "        \"" + label.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ) + "\"," );
+            out.println( "    };" );
+            out.println();
+            out.println( "    /**" );
+            out.println( "     * Indexes of columns of a result set, binding is immutable and it's published" );
+            out.println( "     * by one volatile write, so concurrent fetches never mix indexes." );
+            out.println( "     * Result set is weakly referenced and is not kept alive by the wrapper." );
+            out.println( "     */" );
+            out.println( "    private static final class ColumnBinding {" );
+            out.println();
+            out.println( "        private final WeakReference<ResultSet> rs;" );
+            out.println( "        private final int[] indexes;" );
+            out.println();
+            out.println( "        ColumnBinding( ResultSet rs, int[] indexes ) {" );
+            out.println( "            this.rs = new WeakReference<>( rs );" );
+            out.println( "            this.indexes = indexes;" );
+            out.println( "        }" );
+            out.println();
+            out.println( "    }" );
+            out.println();
+            out.println( "    private volatile ColumnBinding binding;" );
+            out.println();
+            out.println( "    private static java.time.LocalDate toLocalDate( java.sql.Date date ) {" );
+            out.println( "        return date == null ? null : date.toLocalDate();" );
+            out.println( "    }" );
+            out.println();
+            out.println( "    private static java.time.LocalDateTime toLocalDateTime( java.sql.Timestamp date ) {" );
+            out.println( "        return date == null ? null : date.toLocalDateTime();" );
+            out.println( "    }" );
+            out.println();
+            out.println( "    private static int[] bind( ResultSet rs ) {" );
+            out.println( "        int[] res = new int[LABELS.length];" );
+            out.println( "        for( int i = 0; i < LABELS.length; i++ ) {" );
+            out.println( "            try {" );
+            out.println( "                res[i] = rs.findColumn( LABELS[i] );" );
+            out.println( "            } catch( SQLException ex ) {" );
+            out.println( "                System.err.println( \"Column \" + LABELS[i] + \" is absent in the query, it is skipped.\" );" );
+            out.println( "            }" );
+            out.println( "        }" );
+            out.println( "        return res;" );
+            out.println( "    }" );
+            out.println();
+            out.println( "    @Override" );
+            out.println( "    public " + entityName + " wrap( ResultSet rs, Class<C> cls ) {" );
+            out.println( "        " + entityName + " result = new " + entityName + "();" );
+            out.println( "        try {" );
+            out.println( "            ColumnBinding b = binding;" );
+            out.println( "            if( b == null || b.rs.get() != rs ) {" );
+            out.println( "                //properties are needed for DataSource and commit" );
+            out.println( "                getPlan( result, " + entityName + ".class );" );
+            out.println( "                b = new ColumnBinding( rs, bind( rs ) );" );
+            out.println( "                binding = b;" );
+            out.println( "            }" );
+            out.println( "            int[] c = b.indexes;" );
+            for( String statement : statements )
+                out.println( "            " + statement );
+            out.println( "        } catch( SQLException ex ) {" );
+            out.println( "            ex.printStackTrace();" );
+            out.println( "        }" );
+            out.println( "        return result;" );
+            out.println( "    }" );
+            out.println();
+            out.println( "}" );
+        }
+    }
+
+}
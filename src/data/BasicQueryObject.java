@@ -1,6 +1,7 @@
 package data;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
 
 /**
  *
@@ -8,11 +9,23 @@ import java.sql.Connection;
  */
 public class BasicQueryObject implements QueryObject {
 
+    /**
+     * Rows are read by large batches to reduce count of round trips.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    
     private String selectText;
     private String insertText;
     private String deleteText;
     private Object[] params;
     private Connection connection;
+    private ConnectionProvider connectionProvider;
+    private String[] keyFields;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private int maxRows = 0;
+    private int queryTimeout = 0;
+    private int resultSetType = ResultSet.TYPE_FORWARD_ONLY;
+    private int resultSetConcurrency = ResultSet.CONCUR_READ_ONLY;
     
     @Override
     public String getSelectText() {
@@ -47,7 +60,18 @@ public class BasicQueryObject implements QueryObject {
     }
 
     public BasicQueryObject() {
-        this( null, null, null );
+        this( null, null, ( Connection ) null );
+    }
+
+    /**
+     * 
+     * @param text - query text.
+     * @param params - params for query.
+     * @param provider - provider of connections for executing query.
+     */
+    public BasicQueryObject( String text, Object[] params, ConnectionProvider provider ) {
+        this( text, params, ( Connection ) null );
+        this.connectionProvider = provider;
     }
 
     @Override
@@ -79,5 +103,78 @@ public class BasicQueryObject implements QueryObject {
     public void setConnection( Connection c ) {
         this.connection = c;
     }
+
+    @Override
+    public ConnectionProvider getConnectionProvider() {
+        return connectionProvider;
+    }
+
+    @Override
+    public void setConnectionProvider( ConnectionProvider provider ) {
+        this.connectionProvider = provider;
+    }
+
+    @Override
+    public String[] getKeyFields() {
+        return keyFields;
+    }
+
+    @Override
+    public void setKeyFields( String[] keyFields ) {
+        this.keyFields = keyFields;
+    }
+
+    @Override
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    @Override
+    public void setFetchSize( int fetchSize ) {
+        if( fetchSize < 0 ) throw new IllegalArgumentException( "Fetch size can't be negative." );
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    @Override
+    public void setMaxRows( int maxRows ) {
+        if( maxRows < 0 ) throw new IllegalArgumentException( "Max rows can't be negative." );
+        this.maxRows = maxRows;
+    }
+
+    @Override
+    public int getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    @Override
+    public void setQueryTimeout( int seconds ) {
+        if( seconds < 0 ) throw new IllegalArgumentException( "Timeout can't be negative." );
+        this.queryTimeout = seconds;
+    }
+
+    @Override
+    public int getResultSetType() {
+        return resultSetType;
+    }
+
+    @Override
+    public void setResultSetType( int resultSetType ) {
+        this.resultSetType = resultSetType;
+    }
+
+    @Override
+    public int getResultSetConcurrency() {
+        return resultSetConcurrency;
+    }
+
+    @Override
+    public void setResultSetConcurrency( int resultSetConcurrency ) {
+        this.resultSetConcurrency = resultSetConcurrency;
+    }
     
 }
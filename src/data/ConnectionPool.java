@@ -0,0 +1,489 @@
+package data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lightweight pool of connections.
+ * Borrowed connection is a proxy, its {@code close} gives physical connection back to the pool.
+ * Pool keeps from min to max physical connections, connections that are idle longer
+ * than idle timeout are closed while there are more than min connections.
+ * Eviction is done on borrowing and giving back, there is no background thread.
+ * Idle connection is checked by validation query before it's given out if it was
+ * not used for validation interval.
+ * If all connections are borrowed, borrower waits up to borrow timeout.
+ * <pre>
+ * ConnectionPool pool = FirebirdConnection.createPool( url, user, passw );
+ * query.setConnectionProvider( pool );
+ * </pre>
+ *
+ * @author Belkin Sergei
+ */
+public class ConnectionPool implements ConnectionProvider, AutoCloseable {
+
+    private final ConnectionProvider factory;
+    private int minSize = 0;
+    private int maxSize = 10;
+    private long idleTimeout = TimeUnit.MINUTES.toMillis( 5 );
+    private long borrowTimeout = TimeUnit.SECONDS.toMillis( 30 );
+    private String validationQuery = "SELECT 1 FROM RDB$DATABASE";
+    private long validationInterval = TimeUnit.SECONDS.toMillis( 5 );
+
+    /**
+     * Idle connections, the most recently used is the first.
+     */
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    /**
+     * Count of physical connections including borrowed ones and ones being created.
+     */
+    private int total = 0;
+    private int waiting = 0;
+    private boolean closed = false;
+
+    private long borrowCount;
+    private long waitCount;
+    private long waitNanos;
+    private long timeoutCount;
+    private long createdCount;
+    private long destroyedCount;
+    private long validationFailedCount;
+
+    /**
+     * Physical connection and its state.
+     */
+    private static final class PooledConnection {
+
+        private final Connection connection;
+        private long lastUsed = System.nanoTime();
+
+        PooledConnection( Connection connection ) {
+            this.connection = connection;
+        }
+
+    }
+
+    /**
+     * Handler of borrowed connection proxy.
+     */
+    private final class Handler implements InvocationHandler {
+
+        private PooledConnection pooled;
+        private final Connection physical;
+
+        Handler( PooledConnection pooled ) {
+            this.pooled = pooled;
+            this.physical = pooled.connection;
+        }
+
+        @Override
+        public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+            switch( method.getName() ) {
+                case "close":
+                    if( args == null ) {
+                        PooledConnection p;
+                        synchronized( this ) {
+                            p = pooled;
+                            pooled = null;
+                        }
+                        if( p != null ) giveBack( p );
+                        return null;
+                    }
+                    break;
+                case "isClosed":
+                    if( args == null ) {
+                        synchronized( this ) {
+                            if( pooled == null ) return true;
+                        }
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode( proxy );
+                case "toString":
+                    return "Pooled " + physical;
+                default:
+            }
+            synchronized( this ) {
+                if( pooled == null ) throw new SQLException( "Connection is closed." );
+            }
+            try {
+                return method.invoke( physical, args );
+            } catch( InvocationTargetException ex ) {
+                throw ex.getCause();
+            }
+        }
+
+    }
+
+    /**
+     * @param factory provider of physical connections.
+     */
+    public ConnectionPool( ConnectionProvider factory ) {
+        if( factory == null ) throw new NullPointerException( "Connection factory must be set." );
+        this.factory = factory;
+    }
+
+    /**
+     * @param con connection.
+     * @return physical connection if the connection is borrowed from a pool,
+     * otherwise the connection itself.
+     */
+    public static Connection getPhysicalConnection( Connection con ) {
+        if( con != null && Proxy.isProxyClass( con.getClass() ) ) {
+            InvocationHandler handler = Proxy.getInvocationHandler( con );
+            if( handler instanceof ConnectionPool.Handler )
+                return ( ( Handler ) handler ).physical;
+        }
+        return con;
+    }
+
+    public synchronized int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * @param minSize count of connections that are not closed by idle eviction.
+     */
+    public synchronized void setMinSize( int minSize ) {
+        if( minSize < 0 ) throw new IllegalArgumentException( "Min size can't be negative." );
+        this.minSize = minSize;
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized void setMaxSize( int maxSize ) {
+        if( maxSize <= 0 ) throw new IllegalArgumentException( "Max size must be positive." );
+        this.maxSize = maxSize;
+        notifyAll();
+    }
+
+    public synchronized long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * @param idleTimeout time in milliseconds, {@code 0} means connections are not evicted.
+     */
+    public synchronized void setIdleTimeout( long idleTimeout ) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public synchronized long getBorrowTimeout() {
+        return borrowTimeout;
+    }
+
+    /**
+     * @param borrowTimeout time in milliseconds of waiting for free connection.
+     */
+    public synchronized void setBorrowTimeout( long borrowTimeout ) {
+        this.borrowTimeout = borrowTimeout;
+    }
+
+    public synchronized String getValidationQuery() {
+        return validationQuery;
+    }
+
+    /**
+     * @param validationQuery query that checks connection,
+     * if {@code null} {@code Connection.isValid} is used.
+     */
+    public synchronized void setValidationQuery( String validationQuery ) {
+        this.validationQuery = validationQuery;
+    }
+
+    public synchronized long getValidationInterval() {
+        return validationInterval;
+    }
+
+    /**
+     * @param validationInterval connection that was idle for this time in milliseconds
+     * is validated before it's given out, {@code 0} means validation on every borrowing.
+     */
+    public synchronized void setValidationInterval( long validationInterval ) {
+        this.validationInterval = validationInterval;
+    }
+
+    /**
+     * Borrow connection, it's given back by {@code close}.
+     * @return connection.
+     * @throws SQLException if connection can't be created or timeout expired.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        boolean waited = false;
+        while( true ) {
+            PooledConnection pooled = null;
+            boolean create = false;
+            List<PooledConnection> evicted;
+            synchronized( this ) {
+                if( closed ) throw new SQLException( "Connection pool is closed." );
+                evicted = evictIdle( System.nanoTime() );
+                if( !idle.isEmpty() ) {
+                    pooled = idle.pollFirst();
+                } else if( total < maxSize ) {
+                    total++;
+                    create = true;
+                } else {
+                    long left = TimeUnit.MILLISECONDS.toNanos( borrowTimeout ) - ( System.nanoTime() - start );
+                    if( left <= 0 ) {
+                        timeoutCount++;
+                        throw new SQLTimeoutException( "There is no free connection for "
+                                + borrowTimeout + " ms, pool size is " + maxSize + "." );
+                    }
+                    waited = true;
+                    waiting++;
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait( this, left );
+                    } catch( InterruptedException ex ) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException( "Waiting for connection was interrupted.", ex );
+                    } finally {
+                        waiting--;
+                    }
+                }
+            }
+            destroyAll( evicted );
+            if( create ) {
+                try {
+                    pooled = new PooledConnection( factory.getConnection() );
+                } catch( SQLException | RuntimeException ex ) {
+                    synchronized( this ) {
+                        total--;
+                        notifyAll();
+                    }
+                    throw ex;
+                }
+                synchronized( this ) {
+                    createdCount++;
+                }
+            } else if( pooled != null && !validate( pooled ) ) {
+                destroy( pooled );
+                continue;
+            }
+            if( pooled != null ) {
+                synchronized( this ) {
+                    borrowCount++;
+                    if( waited ) {
+                        waitCount++;
+                        waitNanos += System.nanoTime() - start;
+                    }
+                }
+                return ( Connection ) Proxy.newProxyInstance( Connection.class.getClassLoader(),
+                        new Class<?>[] { Connection.class }, new Handler( pooled ) );
+            }
+        }
+    }
+
+    private boolean validate( PooledConnection pooled ) {
+        String query;
+        synchronized( this ) {
+            if( System.nanoTime() - pooled.lastUsed < TimeUnit.MILLISECONDS.toNanos( validationInterval ) )
+                return true;
+            query = validationQuery;
+        }
+        boolean res;
+        try {
+            if( query == null ) {
+                res = pooled.connection.isValid( 5 );
+            } else {
+                try( Statement st = pooled.connection.createStatement();
+                        ResultSet rs = st.executeQuery( query ) ) {
+                    res = rs.next();
+                }
+            }
+        } catch( SQLException ex ) {
+            res = false;
+        }
+        if( !res ) {
+            synchronized( this ) {
+                validationFailedCount++;
+            }
+        }
+        return res;
+    }
+
+    private void giveBack( PooledConnection pooled ) {
+        boolean reusable;
+        try {
+            reusable = !pooled.connection.isClosed();
+            if( reusable && !pooled.connection.getAutoCommit() ) {
+                //unfinished transaction is not passed to next borrower
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit( true );
+            }
+        } catch( SQLException ex ) {
+            reusable = false;
+        }
+        List<PooledConnection> evicted;
+        synchronized( this ) {
+            reusable &= !closed;
+            if( reusable ) {
+                pooled.lastUsed = System.nanoTime();
+                idle.addFirst( pooled );
+            }
+            evicted = evictIdle( System.nanoTime() );
+            notifyAll();
+        }
+        if( !reusable ) destroy( pooled );
+        destroyAll( evicted );
+    }
+
+    /**
+     * Remove connections that are idle longer than idle timeout, the oldest are the last.
+     * @return connections that have to be closed.
+     */
+    private List<PooledConnection> evictIdle( long now ) {
+        List<PooledConnection> res = new ArrayList<>();
+        if( idleTimeout <= 0 ) return res;
+        long timeout = TimeUnit.MILLISECONDS.toNanos( idleTimeout );
+        for( Iterator<PooledConnection> it = idle.descendingIterator();
+                it.hasNext() && total - res.size() > minSize; ) {
+            PooledConnection pooled = it.next();
+            if( now - pooled.lastUsed < timeout ) break;
+            it.remove();
+            res.add( pooled );
+        }
+        return res;
+    }
+
+    private void destroyAll( List<PooledConnection> list ) {
+        for( PooledConnection pooled : list )
+            destroy( pooled );
+    }
+
+    /**
+     * Close physical connection, it's not counted anymore.
+     */
+    private void destroy( PooledConnection pooled ) {
+        StatementCache.remove( pooled.connection );
+        try {
+            pooled.connection.close();
+        } catch( SQLException ex ) {
+            //connection is broken
+        }
+        synchronized( this ) {
+            total--;
+            destroyedCount++;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Create connections up to min size.
+     * @throws SQLException
+     */
+    public void fill() throws SQLException {
+        List<Connection> borrowed = new ArrayList<>();
+        try {
+            while( true ) {
+                synchronized( this ) {
+                    if( total >= minSize ) break;
+                }
+                borrowed.add( getConnection() );
+            }
+        } finally {
+            for( Connection con : borrowed )
+                con.close();
+        }
+    }
+
+    /**
+     * Close idle connections, borrowed ones are closed when they are given back.
+     */
+    @Override
+    public void close() {
+        List<PooledConnection> list;
+        synchronized( this ) {
+            closed = true;
+            list = new ArrayList<>( idle );
+            idle.clear();
+            notifyAll();
+        }
+        destroyAll( list );
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return count of physical connections.
+     */
+    public synchronized int getSize() {
+        return total;
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    public synchronized int getActiveCount() {
+        return total - idle.size();
+    }
+
+    /**
+     * @return count of threads that wait for connection now.
+     */
+    public synchronized int getWaitingCount() {
+        return waiting;
+    }
+
+    public synchronized long getBorrowCount() {
+        return borrowCount;
+    }
+
+    /**
+     * @return count of borrowings that had to wait for free connection.
+     */
+    public synchronized long getWaitCount() {
+        return waitCount;
+    }
+
+    /**
+     * @return total time in milliseconds of waiting for free connection.
+     */
+    public synchronized long getWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis( waitNanos );
+    }
+
+    public synchronized long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public synchronized long getCreatedCount() {
+        return createdCount;
+    }
+
+    public synchronized long getDestroyedCount() {
+        return destroyedCount;
+    }
+
+    public synchronized long getValidationFailedCount() {
+        return validationFailedCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ConnectionPool{" + "size=" + total + ", idle=" + idle.size() + ", waiting=" + waiting
+                + ", borrowed=" + borrowCount + ", waits=" + waitCount + ", timeouts=" + timeoutCount
+                + ", created=" + createdCount + ", destroyed=" + destroyedCount + '}';
+    }
+
+}
@@ -0,0 +1,61 @@
+package data;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Factory of connections, e.g. {@code ConnectionPool}.
+ * Connection obtained from provider is closed by its user when it's not needed anymore.
+ *
+ * @author Belkin Sergei
+ */
+@FunctionalInterface
+public interface ConnectionProvider {
+
+    Connection getConnection() throws SQLException;
+
+    /**
+     * @param query query object.
+     * @return true if query has connection or connection provider.
+     */
+    static boolean isAvailable( QueryObject query ) {
+        return query != null && ( query.getConnection() != null || query.getConnectionProvider() != null );
+    }
+
+    /**
+     * Obtain connection for executing of the query.
+     * Connection of the query is returned if it's set, otherwise connection
+     * is taken from its provider, it must be given back by {@code release}.
+     * @param query query object.
+     * @return connection.
+     * @throws SQLException
+     */
+    static Connection acquire( QueryObject query ) throws SQLException {
+        Connection con = query.getConnection();
+        if( con != null ) return con;
+        ConnectionProvider provider = query.getConnectionProvider();
+        if( provider == null )
+            throw new SQLException( "Neither connection nor connection provider is set." );
+        return provider.getConnection();
+    }
+
+    /**
+     * Give back connection obtained by {@code acquire}.
+     * Connection of the query itself stays open.
+     * Statements of connection that is not pooled are closed with it
+     * and its {@code StatementCache} is discarded.
+     * @param query query object.
+     * @param con connection, {@code null} is ignored.
+     */
+    static void release( QueryObject query, Connection con ) {
+        if( con == null || con == query.getConnection() ) return;
+        //cache of pooled connection lives as long as its physical connection
+        if( ConnectionPool.getPhysicalConnection( con ) == con ) StatementCache.remove( con );
+        try {
+            con.close();
+        } catch( SQLException ex ) {
+            ex.printStackTrace();
+        }
+    }
+
+}
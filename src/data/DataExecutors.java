@@ -0,0 +1,103 @@
+package data;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import javafx.application.Platform;
+
+/**
+ * Executors that are used for data retrieving off the FX application thread
+ * and for delivering results back to it.
+ *
+ * @author Belkin Sergei
+ */
+public final class DataExecutors {
+
+    /**
+     * Run tasks on FX application thread.
+     * If FX toolkit is not initialized (e.g. in tests) task runs on the caller's thread.
+     */
+    public static final Executor FX = DataExecutors::runOnFXThread;
+
+    private static volatile Executor defaultExecutor;
+    private static volatile ScheduledExecutorService scheduler;
+
+    private DataExecutors() {
+    }
+
+    public static void runOnFXThread( Runnable task ) {
+        try {
+            Platform.runLater( task );
+        } catch( IllegalStateException ex ) {
+            //toolkit is not initialized
+            task.run();
+        }
+    }
+
+    /**
+     * Executor for background data retrieving.
+     * Virtual threads are used where available, otherwise cached pool of daemon threads.
+     * @return Executor.
+     */
+    public static Executor getDefaultExecutor() {
+        Executor res = defaultExecutor;
+        if( res == null ) {
+            synchronized( DataExecutors.class ) {
+                res = defaultExecutor;
+                if( res == null ) {
+                    res = createDefaultExecutor();
+                    defaultExecutor = res;
+                }
+            }
+        }
+        return res;
+    }
+
+    public static void setDefaultExecutor( Executor executor ) {
+        defaultExecutor = executor;
+    }
+
+    /**
+     * Scheduler for delayed tasks, e.g. debouncing.
+     * It has one daemon thread, tasks must be short and usually pass work 
+     * to {@code FX} or to default executor.
+     * @return ScheduledExecutorService.
+     */
+    public static ScheduledExecutorService getScheduler() {
+        ScheduledExecutorService res = scheduler;
+        if( res == null ) {
+            synchronized( DataExecutors.class ) {
+                res = scheduler;
+                if( res == null ) {
+                    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor( 1, ( r ) -> {
+                        Thread thread = new Thread( r, "FXDPL scheduler" );
+                        thread.setDaemon( true );
+                        return thread;
+                    } );
+                    //cancelled debounced tasks don't stay in the queue
+                    executor.setRemoveOnCancelPolicy( true );
+                    res = executor;
+                    scheduler = res;
+                }
+            }
+        }
+        return res;
+    }
+
+    private static Executor createDefaultExecutor() {
+        try {
+            return ( ExecutorService ) Executors.class
+                    .getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+        } catch( ReflectiveOperationException | RuntimeException ex ) {
+            //virtual threads are not available
+        }
+        return Executors.newCachedThreadPool( ( r ) -> {
+            Thread thread = new Thread( r, "FXDPL data" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+}
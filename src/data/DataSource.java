@@ -1,16 +1,29 @@
 package data;
 
 import data.managers.BasicDAO;
+import data.managers.HashIndex;
+import data.managers.LazyObservableList;
 import data.wrappers.IDBPropertyReference;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import javafx.beans.property.Property;
 import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
+import javafx.beans.value.WeakChangeListener;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ListChangeListener.Change;
 import javafx.collections.ObservableList;
@@ -19,6 +32,7 @@ import javafx.collections.WeakListChangeListener;
 /**
  * Naive implementation of DataSource object.
  * This class catchs up data opening, changing, cursor moving.
+ * It can be linked to master DataSource, see {@code setMasterDataSource}.
  *
  * @author Belkin Sergei
  */
@@ -54,6 +68,14 @@ public class DataSource {
     }
     
     private final Map<String, Property> rowObjectProperties = new HashMap<>();
+    /**
+     * Names of rowObjectProperties by the properties.
+     */
+    private final Map<ObservableValue, String> rowObjectPropertyNames = new IdentityHashMap<>();
+    /**
+     * Names of rowObjectProperties that were edited and not written back yet.
+     */
+    private final Set<String> editedProperties = new LinkedHashSet<>();
     
     private Integer currentRowIndex = 0;
     /**
@@ -62,7 +84,7 @@ public class DataSource {
     private final ChangeListener<ObservableList> onOpeningListener;
     /**
      * Listen list changes.
-     * Currently it does nothing.
+     * Currently it only picks up first row when rows come into empty list.
      */    
     private final ListChangeListener onListChanged;    
     /**
@@ -87,24 +109,127 @@ public class DataSource {
     List<String> masterFields;
     Long masterDelay;
     Boolean async;
+    /**
+     * Reopen dataObject when row of master changes.
+     */
+    private final ChangeListener onMasterRowChange;
+    private final WeakChangeListener weakMasterRowChange;
+    /**
+     * Debounced reopening that is not started yet.
+     */
+    private ScheduledFuture<?> pendingMasterRefresh;
+    /**
+     * Every master row change gets its own generation, outdated reopenings are skipped.
+     */
+    private long masterGeneration = 0;
+    /**
+     * Depth of refreshing of rowObjectProperties from rowObject or writing them back,
+     * changes of properties made meanwhile are not written back.
+     */
+    private int refreshDepth = 0;
+    /**
+     * Write-back of user edits is scheduled on next pulse.
+     */
+    private boolean writeBackScheduled = false;
+    private long writeBackCount = 0;
+    private long suppressedCount = 0;
+    private long coalescedCount = 0;
+
+    public DataSource getMasterDataSource() {
+        return masterDataSource;
+    }
+
+    /**
+     * Master-detail link.
+     * When row of master changes, dataObject is reopened with values of 
+     * master fields of the row as parameters.
+     * @param masterDataSource master, {@code null} removes the link.
+     */
+    public void setMasterDataSource( DataSource masterDataSource ) {
+        if( this.masterDataSource != null )
+            this.masterDataSource.getRowObject().removeListener( weakMasterRowChange );
+        cancelMasterRefresh();
+        this.masterDataSource = masterDataSource;
+        if( this.masterDataSource != null )
+            this.masterDataSource.getRowObject().addListener( weakMasterRowChange );
+    }
+
+    public List<String> getMasterFields() {
+        return masterFields;
+    }
+
+    /**
+     * @param masterFields names of properties of master rows, their values are 
+     * parameters of dataObject query in the same order.
+     */
+    public void setMasterFields( List<String> masterFields ) {
+        this.masterFields = masterFields;
+    }
+
+    public Long getMasterDelay() {
+        return masterDelay;
+    }
+
+    /**
+     * @param masterDelay delay in milliseconds between master row change and reopening,
+     * only the last change within the delay causes reopening. {@code null} or {@code 0} 
+     * means reopening at once.
+     */
+    public void setMasterDelay( Long masterDelay ) {
+        this.masterDelay = masterDelay;
+    }
+
+    public Boolean getAsync() {
+        return async;
+    }
+
+    /**
+     * @param async if true dataObject is reopened by {@code BasicDAO.openAsync}, 
+     * responses of outdated reopenings are discarded.
+     */
+    public void setAsync( Boolean async ) {
+        this.async = async;
+    }
 
     public DataSource() {
         onRowObjectChange = (observable, oldValue, newValue ) -> {
             if( oldValue != newValue ) {
-                rowObjectProperties.forEach( (name, property ) -> {
-                    property.setValue( getValueForProperty( name ) );
-                } );
+                refreshDepth++;
+                try {
+                    rowObjectProperties.forEach( (name, property ) -> {
+                        property.setValue( getValueForProperty( name ) );
+                    } );
+                } finally {
+                    refreshDepth--;
+                }
             }
         };
         rowObject.addListener( onRowObjectChange );
+        onMasterRowChange = ( observable, oldValue, newValue ) -> {
+            if( oldValue != newValue ) scheduleMasterRefresh();
+        };
+        weakMasterRowChange = new WeakChangeListener( onMasterRowChange );
         this.onRowObjectPropertiesChange = ( ObservableValue observable, 
                 Object oldValue, Object newValue ) -> {
-            updateRowObject();
+            if( refreshDepth > 0 ) {
+                suppressedCount++;
+            } else {
+                editedProperties.add( rowObjectPropertyNames.get( observable ) );
+                scheduleWriteBack();
+            }
         };
         this.onListChanged =  ( Change c ) -> {        
+            //rows of incremental opening came into empty list
+            if( rowObject.get() == null && c.getList() == getData()
+                    && -1 < currentRowIndex && currentRowIndex < c.getList().size() ) {
+                rowObject.setValue( c.getList().get( currentRowIndex ) );
+            }
             while( c.next() ) {
                 if( c.wasPermutated() ) {
-//                System.out.println( "Was permutated " );
+                    //current row keeps being current at its new position, e.g. after sorting
+                    if( c.getList() == getData() 
+                            && c.getFrom() <= currentRowIndex && currentRowIndex < c.getTo() )
+                        currentRowIndex = c.getPermutation( currentRowIndex );
                 } else if( c.wasUpdated()) {
 //                System.out.println( "Was updated " );
                 } else {
@@ -125,17 +250,23 @@ public class DataSource {
         };
         this.onOpeningListener = ( ObservableValue<? extends ObservableList> observable,
                     ObservableList oldValue, ObservableList newValue ) -> {            
+            //edits of rows of previous data are discarded as well as its tracked changes
+            writeBackScheduled = false;
+            editedProperties.clear();
             //Reset index.
             currentRowIndex = 0;
             //Update currentRowObject.
             if( dataObject != null && dataObject.getData() != null ) {
                 dataObject.getData().addListener( new WeakListChangeListener( onListChanged ) );
-                rowObject.setValue( dataObject.getData().get( currentRowIndex ) );
+                rowObject.setValue( dataObject.getData().isEmpty() 
+                        ? null : dataObject.getData().get( currentRowIndex ) );
             }
         };
         this.onCursorMoving =  ( ObservableValue<? extends Number> observable, 
             Number oldValue, Number newValue ) -> {
             if( oldValue != newValue && dataObject != null && dataObject.getData() != null ) {
+                //edits belong to the row that is left
+                flushWriteBack();
                 currentRowIndex = newValue.intValue();
                 if( currentRowIndex >= 0 && currentRowIndex < dataObject.getData().size() )
                     rowObject.setValue( dataObject.getData().get( currentRowIndex ) );
@@ -143,6 +274,71 @@ public class DataSource {
         };
     }
     
+    private ObservableList getData() {
+        return dataObject == null ? null : dataObject.getData();
+    }
+    
+    private void cancelMasterRefresh() {
+        masterGeneration++;
+        if( pendingMasterRefresh != null ) {
+            pendingMasterRefresh.cancel( false );
+            pendingMasterRefresh = null;
+        }
+    }
+    
+    /**
+     * Reopen dataObject after master delay, previous reopening that is not started is cancelled.
+     * It's expected to be called on FX application thread.
+     */
+    protected void scheduleMasterRefresh() {
+        cancelMasterRefresh();
+        final long gen = masterGeneration;
+        if( masterDelay == null || masterDelay <= 0 ) {
+            refreshFromMaster();
+        } else {
+            pendingMasterRefresh = DataExecutors.getScheduler().schedule( () -> 
+                DataExecutors.FX.execute( () -> {
+                    if( gen == masterGeneration ) {
+                        pendingMasterRefresh = null;
+                        refreshFromMaster();
+                    }
+                } ), masterDelay, TimeUnit.MILLISECONDS );
+        }
+    }
+    
+    /**
+     * @return values of master fields of current row of master, 
+     * {@code null} values if there is no current row.
+     */
+    protected Object[] getMasterParameters() {
+        if( masterFields == null ) return new Object[0];
+        Object[] res = new Object[masterFields.size()];
+        for( int i = 0; i < res.length; i++ )
+            res[i] = masterDataSource.getValueForProperty( masterFields.get( i ) );
+        return res;
+    }
+    
+    /**
+     * Reopen dataObject with parameters from current row of master.
+     */
+    public void refreshFromMaster() {
+        if( masterDataSource == null || dataObject == null || dataObject.getQuery() == null ) return;
+        Object[] params = getMasterParameters();
+        if( Boolean.TRUE.equals( async ) ) {
+            //BasicDAO cancels previous opening and discards its result
+            CompletableFuture<?> opening = dataObject.openAsync( params );
+            opening.whenComplete( ( res, ex ) -> {
+                if( ex != null && !( ex instanceof CancellationException ) ) ex.printStackTrace();
+            } );
+        } else {
+            try {
+                dataObject.open( params );
+            } catch( SQLException ex ) {
+                ex.printStackTrace();
+            }
+        }
+    }
+    
     /**
      * Retrieve value for property in the rowObjectProperties list.
      * @param name - name of the property.
@@ -160,25 +356,192 @@ public class DataSource {
         return res;
     }
     
+    public Integer getCurrentRowIndex() {
+        return currentRowIndex;
+    }
+    
+    /**
+     * Create hash index of cached data by the properties, it's used by {@code locate}.
+     * Index belongs to dataObject, see {@code BasicDAO.createHashIndex}.
+     * @param names names of properties of the wrapper.
+     * @return index, existing one if it was already created.
+     */
+    public HashIndex createIndex( String... names ) {
+        if( dataObject == null || dataObject.getWrapper() == null )
+            throw new IllegalStateException( "Set dataObject with wrapper before creating index." );
+        return dataObject.createHashIndex( names );
+    }
+    
+    /**
+     * @param names names of properties of the index.
+     */
+    public void dropIndex( String... names ) {
+        if( dataObject != null ) dataObject.dropHashIndex( names );
+    }
+    
+    /**
+     * Find position of the first row with given values of the properties.
+     * Index created by {@code createIndex} for the same properties is used, 
+     * otherwise rows are scanned. Data of lazy opening is not indexed, so it's scanned too.
+     * @param names names of properties.
+     * @param values values of the properties in the same order.
+     * @return position of the row or {@code -1}.
+     */
+    public int indexOf( String[] names, Object[] values ) {
+        if( names.length != values.length )
+            throw new IllegalArgumentException( "Count of values must be equal to count of properties." );
+        if( dataObject == null || dataObject.getData() == null || dataObject.getWrapper() == null ) return -1;
+        HashIndex index = dataObject.getHashIndex( names );
+        if( index != null && !( dataObject.getData() instanceof LazyObservableList ) ) return index.indexOf( values );
+        IDBPropertyReference[] refs = new IDBPropertyReference[names.length];
+        for( int i = 0; i < names.length; i++ ) {
+            refs[i] = dataObject.getWrapper().getPropertyByName( names[i] );
+            if( refs[i] == null ) return -1;
+        }
+        List rows = dataObject.getData();
+        for( int i = 0; i < rows.size(); i++ ) {
+            Object row = rows.get( i );
+            boolean found = row != null;
+            for( int j = 0; found && j < refs.length; j++ )
+                found = Objects.equals( refs[j].get( row ), values[j] );
+            if( found ) return i;
+        }
+        return -1;
+    }
+    
+    /**
+     * Move to the first row with given values of the properties.
+     * Pending edits are written to current row before moving.
+     * @param names names of properties.
+     * @param values values of the properties in the same order.
+     * @return position of the row, it's new current row index, or {@code -1} if row is not found.
+     * @see #indexOf(java.lang.String[], java.lang.Object[]) 
+     */
+    public int locate( String[] names, Object[] values ) {
+        int res = indexOf( names, values );
+        if( res >= 0 ) {
+            flushWriteBack();
+            currentRowIndex = res;
+            rowObject.setValue( dataObject.getData().get( res ) );
+        }
+        return res;
+    }
+    
+    public int locate( String name, Object value ) {
+        return locate( new String[] { name }, new Object[] { value } );
+    }
+    
+    /**
+     * Write back edits of rowObjectProperties once on next pulse,
+     * edits made before it are coalesced.
+     */
+    private void scheduleWriteBack() {
+        if( writeBackScheduled ) {
+            coalescedCount++;
+            return;
+        }
+        writeBackScheduled = true;
+        DataExecutors.FX.execute( this::flushWriteBack );
+    }
+    
+    /**
+     * Write back scheduled edits at once.
+     */
+    public void flushWriteBack() {
+        if( writeBackScheduled ) updateRowObject();
+    }
+    
+    /**
+     * @return count of executed write-backs of rowObjectProperties.
+     */
+    public long getWriteBackCount() {
+        return writeBackCount;
+    }
+    
+    /**
+     * @return count of changes of rowObjectProperties that were not written back 
+     * because they were made by refreshing from rowObject.
+     */
+    public long getSuppressedCount() {
+        return suppressedCount;
+    }
+    
+    /**
+     * @return count of edits that were joined with already scheduled write-back.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+    
+    public void resetCounters() {
+        writeBackCount = 0;
+        suppressedCount = 0;
+        coalescedCount = 0;
+    }
+    
     /**
      * It's called after changing properties of currentRowObject 
      * to distribute changes on ObservableList.
+     * Edits of bound properties call it once per pulse, see {@code flushWriteBack},
+     * only edited properties are written and list observers receive update change of the row.
+     * Explicit call without edits writes all properties.
      */
     public void updateRowObject() {
-        if( dataObject != null && dataObject.getData() != null
-                && dataObject.getWrapper() != null && rowObject.get() != null
-                && -1 < currentRowIndex && currentRowIndex < dataObject.getData().size() ) {
-            //set all available properties of rowObject
-            rowObjectProperties.forEach( (name, property) -> {
-                IDBPropertyReference get = dataObject.getWrapper().getPropertyByName( name );
-                if( get != null )
-                    get.set( rowObject.get(), property.getValue() );
-            } );
-            //update list for those listeners that listen list changes
-            dataObject.getData().set( currentRowIndex, rowObject.get() );
+        writeBackScheduled = false;
+        //changes of properties made by write-back itself
+        if( refreshDepth > 0 ) return;
+        refreshDepth++;
+        try {
+            writeBack();
+        } finally {
+            refreshDepth--;
         }
     }
     
+    private void writeBack() {
+        List<String> names = new ArrayList<>( editedProperties.isEmpty() 
+                ? rowObjectProperties.keySet() : editedProperties );
+        editedProperties.clear();
+        if( dataObject == null || dataObject.getData() == null
+                || dataObject.getWrapper() == null || rowObject.get() == null ) return;
+        //row could be moved or removed since the edit, edits of removed row are dropped
+        int position = positionOfRowObject();
+        if( position < 0 ) return;
+        currentRowIndex = position;
+        writeBackCount++;
+        boolean changed = false;
+        //set edited properties of rowObject, dataObject tracks changed ones
+        for( String name : names ) {
+            IDBPropertyReference ref = dataObject.getWrapper().getPropertyByName( name );
+            Property property = rowObjectProperties.get( name );
+            if( ref == null || property == null ) continue;
+            changed |= dataObject.setPropertyValue( position, ref, property.getValue() );
+        }
+        //update list for those listeners that listen list changes
+        if( changed ) {
+            Object row = dataObject.getData().get( position );
+            //shared row was replaced by its copy, see BasicDAO.setCopyOnWrite
+            if( row != rowObject.get() ) rowObject.setValue( row );
+            dataObject.notifyUpdated( position );
+        }
+    }
+    
+    /**
+     * Find rowObject in data by identity, current position is checked first.
+     * Lazy data is not scanned, it would load all pages.
+     * @return position of rowObject or {@code -1} if it isn't in data.
+     */
+    private int positionOfRowObject() {
+        List rows = dataObject.getData();
+        Object row = rowObject.get();
+        if( -1 < currentRowIndex && currentRowIndex < rows.size() && rows.get( currentRowIndex ) == row )
+            return currentRowIndex;
+        if( rows instanceof LazyObservableList ) return -1;
+        for( int i = 0; i < rows.size(); i++ )
+            if( rows.get( i ) == row ) return i;
+        return -1;
+    }
+    
     /**
      * Return SimpleObjectProperty and save it in rowObjectProperties.
      * It returns property regardless of they presence in current rowObject.
@@ -194,6 +557,7 @@ public class DataSource {
             res  = new SimpleObjectProperty( getValueForProperty( name ) );
             res.addListener( onRowObjectPropertiesChange );
             rowObjectProperties.put( name, res );
+            rowObjectPropertyNames.put( res, name );
         }
         return res;
     }
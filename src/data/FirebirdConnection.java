@@ -32,4 +32,11 @@ public class FirebirdConnection {
         return DriverManager.getConnection( connectionURL, props );        
     }    
     
+    /**
+     * @return pool of connections that are opened by {@code getConnection}.
+     */
+    public static ConnectionPool createPool( String url, String user, String passw ) {
+        return new ConnectionPool( () -> getConnection( url, user, passw ) );
+    }
+    
 }
@@ -1,6 +1,9 @@
 package data;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 
 /**
  *
@@ -17,4 +20,99 @@ public interface QueryObject {
     void setDeleteText( String text );
     Connection getConnection();
     void setConnection( Connection c );
-}
\ No newline at end of file
+    /**
+     * Provider is used when connection is not set, 
+     * connection is taken from it for every execution and closed after it.
+     * @return provider of connections, e.g. {@code ConnectionPool}.
+     */
+    default ConnectionProvider getConnectionProvider() {
+        return null;
+    }
+    /**
+     * @param provider provider of connections, query objects that don't keep it
+     * accept only {@code null}.
+     */
+    default void setConnectionProvider( ConnectionProvider provider ) {
+        if( provider != null )
+            throw new UnsupportedOperationException( "Connection provider is not supported by " + getClass().getName() );
+    }
+    /**
+     * Names of DB fields that identify a row, they are used by commit 
+     * to build WHERE clause of UPDATE and DELETE statements.
+     * @return names of key fields or {@code null} if all persistable fields identify a row.
+     */
+    default String[] getKeyFields() {
+        return null;
+    }
+    /**
+     * @param keyFields names of key fields, query objects that don't keep them
+     * accept only {@code null}.
+     */
+    default void setKeyFields( String[] keyFields ) {
+        if( keyFields != null )
+            throw new UnsupportedOperationException( "Key fields are not supported by " + getClass().getName() );
+    }
+    /**
+     * @return count of rows that are fetched by one round trip, {@code 0} means driver default.
+     */
+    default int getFetchSize() {
+        return 0;
+    }
+    default void setFetchSize( int fetchSize ) {
+        if( fetchSize != 0 )
+            throw new UnsupportedOperationException( "Fetch size is not supported by " + getClass().getName() );
+    }
+    /**
+     * @return max count of rows of the result, {@code 0} means no limit.
+     */
+    default int getMaxRows() {
+        return 0;
+    }
+    default void setMaxRows( int maxRows ) {
+        if( maxRows != 0 )
+            throw new UnsupportedOperationException( "Max rows is not supported by " + getClass().getName() );
+    }
+    /**
+     * @return timeout of the query in seconds, {@code 0} means no timeout.
+     */
+    default int getQueryTimeout() {
+        return 0;
+    }
+    default void setQueryTimeout( int seconds ) {
+        if( seconds != 0 )
+            throw new UnsupportedOperationException( "Query timeout is not supported by " + getClass().getName() );
+    }
+    /**
+     * @return type of result set, e.g. {@code ResultSet.TYPE_FORWARD_ONLY}.
+     */
+    default int getResultSetType() {
+        return ResultSet.TYPE_FORWARD_ONLY;
+    }
+    default void setResultSetType( int resultSetType ) {
+        if( resultSetType != ResultSet.TYPE_FORWARD_ONLY )
+            throw new UnsupportedOperationException( "Result set type is not supported by " + getClass().getName() );
+    }
+    /**
+     * @return concurrency of result set, e.g. {@code ResultSet.CONCUR_READ_ONLY}.
+     */
+    default int getResultSetConcurrency() {
+        return ResultSet.CONCUR_READ_ONLY;
+    }
+    default void setResultSetConcurrency( int resultSetConcurrency ) {
+        if( resultSetConcurrency != ResultSet.CONCUR_READ_ONLY )
+            throw new UnsupportedOperationException( "Result set concurrency is not supported by " + getClass().getName() );
+    }
+    
+    /**
+     * Apply fetch size, max rows and query timeout of the query to the statement.
+     * Statement must be prepared with result set type and concurrency of the query.
+     * @param query query object.
+     * @param ps statement.
+     * @throws SQLException 
+     */
+    static void applyHints( QueryObject query, PreparedStatement ps ) throws SQLException {
+        ps.setFetchSize( query.getFetchSize() );
+        ps.setMaxRows( query.getMaxRows() );
+        ps.setQueryTimeout( query.getQueryTimeout() );
+    }
+}
\ No newline at end of file
@@ -0,0 +1,327 @@
+package data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of prepared statements of one connection.
+ * Statements are keyed by SQL text and result set type and concurrency,
+ * so repeated executions of the same query are not parsed by the server again.
+ * Statement is borrowed by {@code prepare} and must be given back by {@code release},
+ * while it is borrowed the same statement text gets a new uncached statement.
+ * Caches are kept in global registry by connection, see {@code forConnection},
+ * connections borrowed from {@code ConnectionPool} share cache of their physical connection.
+ * Cache is discarded when the pool closes its physical connection or when
+ * connection that is not pooled is given back to its {@code ConnectionProvider};
+ * connection of a query has to be given to {@code remove} by its owner, 
+ * otherwise its cache is discarded only after it's closed, by the next {@code forConnection}.
+ *
+ * @author Belkin Sergei
+ */
+public final class StatementCache {
+
+    public static final int DEFAULT_MAX_SIZE = 50;
+
+    private static final Map<Connection, StatementCache> REGISTRY = new IdentityHashMap<>();
+    private static volatile int defaultMaxSize = DEFAULT_MAX_SIZE;
+
+    private final Connection connection;
+    private int maxSize;
+    private final LinkedHashMap<Key, Entry> statements = new LinkedHashMap<>( 16, 0.75f, true );
+    /**
+     * Cached statements that are borrowed now.
+     */
+    private final Map<PreparedStatement, Entry> borrowed = new IdentityHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static final class Key {
+
+        private final String sql;
+        private final int resultSetType;
+        private final int resultSetConcurrency;
+
+        Key( String sql, int resultSetType, int resultSetConcurrency ) {
+            this.sql = sql;
+            this.resultSetType = resultSetType;
+            this.resultSetConcurrency = resultSetConcurrency;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if( !( obj instanceof Key ) ) return false;
+            Key other = ( Key ) obj;
+            return resultSetType == other.resultSetType
+                    && resultSetConcurrency == other.resultSetConcurrency
+                    && sql.equals( other.sql );
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash( sql, resultSetType, resultSetConcurrency );
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final PreparedStatement statement;
+        private boolean inUse;
+        /**
+         * Entry was evicted while borrowed, statement is closed on release.
+         */
+        private boolean evicted;
+
+        Entry( PreparedStatement statement ) {
+            this.statement = statement;
+        }
+
+    }
+
+    private StatementCache( Connection connection, int maxSize ) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param con connection.
+     * @return cache of the connection, it's created on first call.
+     * Caches of closed connections are discarded.
+     */
+    public static StatementCache forConnection( Connection con ) {
+        if( con == null ) throw new NullPointerException( "Connection must be set." );
+        //statements of pooled connection live as long as its physical connection
+        con = ConnectionPool.getPhysicalConnection( con );
+        synchronized( REGISTRY ) {
+            StatementCache res = REGISTRY.get( con );
+            if( res == null ) {
+                purgeClosed();
+                res = new StatementCache( con, defaultMaxSize );
+                REGISTRY.put( con, res );
+            }
+            return res;
+        }
+    }
+
+    /**
+     * Close cached statements of the connection and forget its cache.
+     * It must be called before the connection is closed if it's not
+     * going to be closed soon.
+     * @param con connection.
+     */
+    public static void remove( Connection con ) {
+        con = ConnectionPool.getPhysicalConnection( con );
+        StatementCache cache;
+        synchronized( REGISTRY ) {
+            cache = REGISTRY.remove( con );
+            purgeClosed();
+        }
+        if( cache != null ) cache.clear();
+    }
+
+    private static void purgeClosed() {
+        for( Iterator<Map.Entry<Connection, StatementCache>> it = REGISTRY.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Connection, StatementCache> e = it.next();
+            boolean closed;
+            try {
+                closed = e.getKey().isClosed();
+            } catch( SQLException ex ) {
+                closed = true;
+            }
+            if( closed ) {
+                it.remove();
+                e.getValue().clear();
+            }
+        }
+    }
+
+    public static int getDefaultMaxSize() {
+        return defaultMaxSize;
+    }
+
+    /**
+     * @param maxSize max count of statements of caches that will be created,
+     * {@code 0} disables caching.
+     */
+    public static void setDefaultMaxSize( int maxSize ) {
+        if( maxSize < 0 ) throw new IllegalArgumentException( "Size can't be negative." );
+        defaultMaxSize = maxSize;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param maxSize max count of cached statements, {@code 0} disables caching.
+     */
+    public void setMaxSize( int maxSize ) {
+        if( maxSize < 0 ) throw new IllegalArgumentException( "Size can't be negative." );
+        List<PreparedStatement> toClose;
+        synchronized( this ) {
+            this.maxSize = maxSize;
+            toClose = evict();
+        }
+        closeAll( toClose );
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public void resetCounters() {
+        hits.set( 0 );
+        misses.set( 0 );
+    }
+
+    /**
+     * Borrow statement that is forward only and read only.
+     * @param sql statement text.
+     * @return statement without parameters.
+     * @throws SQLException
+     * @see #prepare(java.lang.String, int, int)
+     */
+    public PreparedStatement prepare( String sql ) throws SQLException {
+        return prepare( sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY );
+    }
+
+    /**
+     * Borrow statement from the cache or prepare new one.
+     * @param sql statement text.
+     * @param resultSetType type of result set.
+     * @param resultSetConcurrency concurrency of result set.
+     * @return statement without parameters, it must be given back by {@code release}.
+     * @throws SQLException
+     */
+    public PreparedStatement prepare( String sql, int resultSetType, int resultSetConcurrency )
+            throws SQLException {
+        Key key = new Key( sql, resultSetType, resultSetConcurrency );
+        synchronized( this ) {
+            Entry entry = statements.get( key );
+            if( entry != null && !entry.inUse ) {
+                entry.inUse = true;
+                borrowed.put( entry.statement, entry );
+                hits.incrementAndGet();
+                return entry.statement;
+            }
+        }
+        misses.incrementAndGet();
+        PreparedStatement ps = connection.prepareStatement( sql, resultSetType, resultSetConcurrency );
+        List<PreparedStatement> toClose;
+        synchronized( this ) {
+            //statement of the key is borrowed by somebody else, new one isn't cached
+            if( maxSize == 0 || statements.containsKey( key ) ) return ps;
+            Entry entry = new Entry( ps );
+            entry.inUse = true;
+            statements.put( key, entry );
+            borrowed.put( ps, entry );
+            toClose = evict();
+        }
+        closeAll( toClose );
+        return ps;
+    }
+
+    /**
+     * Give back statement obtained by {@code prepare}.
+     * Its parameters and batch are cleared, uncached statement is closed.
+     * @param ps statement, {@code null} is ignored.
+     */
+    public void release( PreparedStatement ps ) {
+        if( ps == null ) return;
+        Entry entry;
+        synchronized( this ) {
+            entry = borrowed.remove( ps );
+        }
+        if( entry != null && !entry.evicted ) {
+            try {
+                ps.clearParameters();
+                ps.clearBatch();
+                synchronized( this ) {
+                    if( !entry.evicted ) {
+                        entry.inUse = false;
+                        return;
+                    }
+                }
+            } catch( SQLException ex ) {
+                //statement is broken, it's not reused
+                synchronized( this ) {
+                    statements.values().remove( entry );
+                }
+            }
+        }
+        close( ps );
+    }
+
+    /**
+     * Close all statements that are not borrowed and empty the cache.
+     * Borrowed statements are closed on release.
+     */
+    public void clear() {
+        List<PreparedStatement> toClose = new ArrayList<>();
+        synchronized( this ) {
+            for( Entry entry : statements.values() ) {
+                if( entry.inUse ) {
+                    entry.evicted = true;
+                } else {
+                    toClose.add( entry.statement );
+                }
+            }
+            statements.clear();
+        }
+        closeAll( toClose );
+    }
+
+    /**
+     * Remove eldest entries above max size.
+     * @return statements that have to be closed.
+     */
+    private List<PreparedStatement> evict() {
+        List<PreparedStatement> res = new ArrayList<>();
+        for( Iterator<Entry> it = statements.values().iterator(); statements.size() > maxSize && it.hasNext(); ) {
+            Entry entry = it.next();
+            it.remove();
+            if( entry.inUse ) {
+                entry.evicted = true;
+            } else {
+                res.add( entry.statement );
+            }
+        }
+        return res;
+    }
+
+    private static void closeAll( List<PreparedStatement> statements ) {
+        for( PreparedStatement ps : statements )
+            close( ps );
+    }
+
+    private static void close( PreparedStatement ps ) {
+        try {
+            ps.close();
+        } catch( SQLException ex ) {
+            //connection is already closed
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+package data.entities;
+
+import annotations.PersistedEntity;
+import annotations.PersistedField;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Persistence info of a class: table name and names of DB fields.
+ * It is obtained from {@code IEntity}/{@code IField} and from
+ * {@code PersistedEntity}/{@code PersistedField} annotations.
+ * Metadata is computed once per class and kept in global thread safe registry,
+ * so it is shared by all wrappers and DAOs. Registry is a {@code ClassValue}, 
+ * it doesn't keep classes and their loaders from unloading.
+ *
+ * @author Belkin Sergei
+ */
+public final class EntityMetadata {
+
+    private static final String FIELD_PREFIX = "FIELD_NAME_";
+    private static final ClassValue<AtomicReference<EntityMetadata>> REGISTRY = 
+            new ClassValue<AtomicReference<EntityMetadata>>() {
+        @Override
+        protected AtomicReference<EntityMetadata> computeValue( Class<?> type ) {
+            return new AtomicReference<>();
+        }
+    };
+
+    private final Class<?> cls;
+    private final String tableName;
+    /**
+     * {@code IField} by its name, e.g. FIELD_NAME_ID.
+     */
+    private final Map<String, IField> fields;
+    /**
+     * Names of DB fields from annotations by names of fields declared in the class
+     * and its super classes.
+     */
+    private final Map<String, String> annotatedFields;
+
+    /**
+     * {@code IField} that is built from {@code PersistedField} annotation.
+     */
+    private static final class AnnotatedField implements IField {
+
+        private final String name;
+        private final String dbFieldName;
+
+        AnnotatedField( String name, String dbFieldName ) {
+            this.name = name;
+            this.dbFieldName = dbFieldName;
+        }
+
+        @Override
+        public String getDBFieldName() {
+            return dbFieldName;
+        }
+
+        @Override
+        public String toString() {
+            return FIELD_PREFIX + name.toUpperCase();
+        }
+
+    }
+
+    private EntityMetadata( Class<?> cls, IEntity inst ) {
+        this.cls = cls;
+        Map<String, IField> entityFields = new HashMap<>();
+        String table = null;
+        if( inst == null && IEntity.class.isAssignableFrom( cls ) ) {
+            try {
+                inst = ( IEntity ) cls.newInstance();
+            } catch( InstantiationException | IllegalAccessException ex ) {
+                //there is no info from IEntity
+            }
+        }
+        if( inst != null ) {
+            table = inst.getTableName();
+            IField[] names = inst.getFieldNames();
+            if( names != null )
+                for( IField e : names ) {
+                    String enumValue = e.getDBFieldName();
+                    if( enumValue != null && !enumValue.trim().isEmpty() )
+                        entityFields.putIfAbsent( e.toString(), e );
+                }
+        }
+        Map<String, String> annotated = new HashMap<>();
+        PersistedEntity entity = cls.getAnnotation( PersistedEntity.class );
+        if( entity != null && !entity.value().trim().isEmpty() ) {
+            if( table == null || table.trim().isEmpty() )
+                table = entity.value();
+            for( Class<?> classLoop = cls; classLoop != null && classLoop != Object.class; 
+                    classLoop = classLoop.getSuperclass() ) {
+                for( Field field : classLoop.getDeclaredFields() ) {
+                    PersistedField pf = field.getAnnotation( PersistedField.class );
+                    if( pf == null || annotated.containsKey( field.getName() ) ) continue;
+                    if( pf.value() == null || pf.value().trim().isEmpty() ) {
+                        System.err.println( "Annotation value is empty: " 
+                                + classLoop.getName() + "." + field.getName() );
+                    } else {
+                        annotated.put( field.getName(), pf.value() );
+                        //IEntity info takes precedence
+                        entityFields.putIfAbsent( FIELD_PREFIX + field.getName().toUpperCase(),
+                                new AnnotatedField( field.getName(), pf.value() ) );
+                    }
+                }
+            }
+        }
+        this.tableName = table;
+        this.fields = Collections.unmodifiableMap( entityFields );
+        this.annotatedFields = Collections.unmodifiableMap( annotated );
+    }
+
+    /**
+     * @param cls class of entity.
+     * @return metadata of the class, instance of {@code IEntity} is created if it's needed.
+     */
+    public static EntityMetadata forClass( Class<?> cls ) {
+        if( cls == null ) throw new NullPointerException( "Class must be set." );
+        AtomicReference<EntityMetadata> holder = REGISTRY.get( cls );
+        EntityMetadata res = holder.get();
+        if( res == null ) {
+            res = new EntityMetadata( cls, null );
+            if( !holder.compareAndSet( null, res ) ) res = holder.get();
+        }
+        return res;
+    }
+
+    /**
+     * @param inst instance of entity, it provides {@code IEntity} info if metadata was not computed yet.
+     * @return metadata of the class of the instance.
+     */
+    public static EntityMetadata forInstance( Object inst ) {
+        if( inst == null ) throw new NullPointerException( "Instance must be set." );
+        AtomicReference<EntityMetadata> holder = REGISTRY.get( inst.getClass() );
+        EntityMetadata res = holder.get();
+        if( res == null ) {
+            res = new EntityMetadata( inst.getClass(), inst instanceof IEntity ? ( IEntity ) inst : null );
+            if( !holder.compareAndSet( null, res ) ) res = holder.get();
+        }
+        return res;
+    }
+
+    public Class<?> getEntityClass() {
+        return cls;
+    }
+
+    /**
+     * @return name of the table or {@code null} if it is not defined.
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @param fieldName name of a field of the class.
+     * @return {@code IField} that follows naming convention of {@code IEntity} 
+     * or is built from {@code PersistedField} annotation, or {@code null}.
+     */
+    public IField getField( String fieldName ) {
+        return fields.get( FIELD_PREFIX + fieldName.toUpperCase() );
+    }
+
+    /**
+     * @param fieldName name of a field declared in the class or its super classes.
+     * @return value of {@code PersistedField} annotation of the field if the class is marked
+     * with {@code PersistedEntity}, otherwise {@code null}.
+     */
+    public String getAnnotatedFieldName( String fieldName ) {
+        return annotatedFields.get( fieldName );
+    }
+
+}
@@ -1,16 +1,36 @@
 package data.managers;
 
+import data.ConnectionPool;
+import data.ConnectionProvider;
+import data.DataExecutors;
 import data.QueryObject;
+import data.StatementCache;
+import data.entities.EntityMetadata;
+import data.wrappers.IDBPropertyReference;
 import data.wrappers.Wrapper;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.lang.ref.WeakReference;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.beans.property.ReadOnlyObjectWrapper;
-import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.WeakListChangeListener;
 
@@ -20,7 +40,10 @@ import javafx.collections.WeakListChangeListener;
  * By means of this class you have next opportunities:
  * <ul>
  *  <li>Retrieve data using {@code BasicDAO.open()}.</li>
+ *  <li>Retrieve rows on demand using {@code BasicDAO.openLazy()}.</li>
  *  <li>Cached data by default.</li>
+ *  <li>Share results of identical queries via {@code BasicDAO.setResultCache()}.</li>
+ *  <li>Filter cached data by in-memory indexes via {@code BasicDAO.createIndexedView()}.</li>
  *  <li>Manipulate data (add, update, delete) via {@code BasicDAO.getData()} property.</li>
  *  <li>Cancel updates using {@code BasicDAO.cancel()}</li>
  *  <li>Commit changes to DB via {@code BasicDAO.commit()}</li>
@@ -32,6 +55,85 @@ import javafx.collections.WeakListChangeListener;
 public abstract class BasicDAO<T> {
 
     private boolean skip = false;
+    private volatile boolean stopRequested = false;
+    private volatile boolean fetching = false;
+    /**
+     * Every opening gets its own generation, 
+     * fetching of outdated generation is stopped and its result discarded.
+     */
+    private final AtomicLong generation = new AtomicLong();
+    /**
+     * Statement of opening in progress, it's needed for cancellation.
+     */
+    private volatile PreparedStatement runningStatement;
+    private volatile CompletableFuture<ObservableList<T>> pendingOpen;
+    /**
+     * Executor for asynchronous opening.
+     */
+    private Executor executor = DataExecutors.getDefaultExecutor();
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor( Executor executor ) {
+        if( executor == null ) throw new NullPointerException( "Executor must be set." );
+        this.executor = executor;
+    }
+    
+    /**
+     * Cache of results for {@code open}, it's not used by default.
+     */
+    private volatile QueryResultCache resultCache;
+    /**
+     * Key of cached result that rows of cached data belong to.
+     */
+    private QueryResultCache.Key resultKey;
+
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * @param resultCache cache that is consulted by {@code open} and {@code openAsync} 
+     * without chunks, e.g. {@code QueryResultCache.getShared()}, {@code null} disables caching.
+     */
+    public void setResultCache( QueryResultCache resultCache ) {
+        this.resultCache = resultCache;
+    }
+    
+    /**
+     * Rows are shared with other DAOs and forked on change.
+     */
+    private volatile boolean copyOnWrite = false;
+    /**
+     * Cached data consists of rows that are shared through result cache.
+     */
+    private boolean rowsShared = false;
+
+    public boolean isCopyOnWrite() {
+        return copyOnWrite;
+    }
+
+    /**
+     * Copy-on-write mode.
+     * DAOs that open the same query share the same row objects through result cache,
+     * {@code QueryResultCache.getShared()} is used if result cache is not set.
+     * Shared row is never changed in place, {@code setPropertyValue} replaces it 
+     * with its copy in cached data, so the change is tracked as an update 
+     * and {@code cancel} puts the shared row back.
+     * Rows must be changed only via {@code setPropertyValue} in this mode.
+     * Without it rows taken from result cache are copied, so every DAO owns its rows.
+     * @param copyOnWrite true to share rows.
+     */
+    public void setCopyOnWrite( boolean copyOnWrite ) {
+        this.copyOnWrite = copyOnWrite;
+    }
+    
+    private QueryResultCache getEffectiveResultCache() {
+        QueryResultCache res = resultCache;
+        return res == null && copyOnWrite ? QueryResultCache.getShared() : res;
+    }
     
     /**
      * Helper that represents pair of updatable object and updating object and
@@ -71,6 +173,72 @@ public abstract class BasicDAO<T> {
             this.lastValue = lastValue;
             this.initValue = initValue;
         }
+        
+        /**
+         * Changed properties by ordinal of the wrapper.
+         */
+        private BitSet dirtyFields;
+        /**
+         * Initial values of properties that were changed in initValue itself.
+         */
+        private Object[] initFieldValues;
+        
+        /**
+         * @return copy of the set of changed properties ordinals.
+         */
+        public BitSet getDirtyFields() {
+            return dirtyFields == null ? new BitSet() : ( BitSet ) dirtyFields.clone();
+        }
+        
+        public boolean isDirty( int ordinal ) {
+            return dirtyFields != null && dirtyFields.get( ordinal );
+        }
+        
+        /**
+         * @param ordinal ordinal of the property.
+         * @param ref the property.
+         * @return value of the property that was read from DB.
+         */
+        public Object getInitFieldValue( int ordinal, IDBPropertyReference ref ) {
+            if( initFieldValues != null && ordinal >= 0 && ordinal < initFieldValues.length 
+                    && dirtyFields.get( ordinal ) )
+                return initFieldValues[ordinal];
+            return ref.get( initValue );
+        }
+        
+        /**
+         * @return true if it has to be written to DB.
+         */
+        boolean hasChanges() {
+            return initValue != lastValue || ( dirtyFields != null && !dirtyFields.isEmpty() );
+        }
+        
+        void fieldChanged( int ordinal, int count, IDBPropertyReference ref, Object oldValue, Object newValue ) {
+            if( dirtyFields == null ) dirtyFields = new BitSet( count );
+            if( !dirtyFields.get( ordinal ) ) {
+                if( initFieldValues == null ) initFieldValues = new Object[count];
+                //value read from DB, initValue is changed in place only while it is the last value
+                initFieldValues[ordinal] = lastValue == initValue ? oldValue : ref.get( initValue );
+                dirtyFields.set( ordinal );
+            } else if( lastValue == initValue && Objects.equals( initFieldValues[ordinal], newValue ) ) {
+                //initial value came back
+                initFieldValues[ordinal] = null;
+                dirtyFields.clear( ordinal );
+            }
+        }
+        
+        /**
+         * Put back initial values that were changed in initValue itself.
+         */
+        void restoreInitFieldValues( List<IDBPropertyReference> props ) {
+            if( initFieldValues == null ) return;
+            for( int i = dirtyFields.nextSetBit( 0 ); i >= 0 && i < initFieldValues.length;
+                    i = dirtyFields.nextSetBit( i + 1 ) ) {
+                props.get( i ).set( initValue, initFieldValues[i] );
+            }
+            initFieldValues = null;
+            dirtyFields = null;
+        }
                 
     }
 
@@ -91,7 +259,7 @@ public abstract class BasicDAO<T> {
      * Cached data retrieved from DB.
      * @return ObservableList.
      */    
-    private ObservableList<T> data = FXCollections.observableArrayList();
+    private ObservableList<T> data = new ObservableRowList<>();
 
     public ObservableList<T> getData() {
         return data;
@@ -106,104 +274,60 @@ public abstract class BasicDAO<T> {
     }    
     
     /**
-     * Track removed items.
+     * Track added, updated and removed items.
      */
-    private final List<T> removedItemsList = new ArrayList<>();
+    private final ChangeTracker<T> tracker = new ChangeTracker<>();
+    /**
+     * Rows in order they were after opening or last commit, it's used by cancel.
+     */
+    private List<T> snapshot = new ArrayList<>();
 
+    /**
+     * @return read only live view of removed items.
+     */
     public List<T> getRemovedItemsList() {
-        return removedItemsList;
+        return tracker.getRemoved();
     }
     
     /**
-     * Track updated items.
+     * @return read only live view of updated items.
      */
-    private final List<Pair<T>> updatedItemsList = new ArrayList<>();
-
     public List<Pair<T>> getUpdatedItemsList() {
-        return updatedItemsList;
+        return tracker.getUpdated();
     }
     
     /**
-     * Track added items.
+     * @return read only live view of added items.
      */
-    private final List<T> addedItemsList = new ArrayList<>();
-
     public List<T> getAddedItemsList() {
-        return addedItemsList;
+        return tracker.getAdded();
     }
     
     /**
      * Listener for cached data.
      */
-    private final WeakListChangeListener<T> listChangeListener = new WeakListChangeListener<>( 
-            ( c ) -> {
-                if( skip ) return;
-                while( c.next() ) {
-                    if( c.wasReplaced() ) {
-                        List<? extends T> removed = c.getRemoved();
-                        List<? extends T> addedSubList = c.getAddedSubList();
-                        int size = removed.size() > addedSubList.size() ? removed.size() : addedSubList.size();
-                        //for each replaced items
-                        for( int i=0; i < size; i++ ) {
-                            T remItem = removed.get( i );
-                            T addItem = addedSubList.get( i );                            
-                            //No actions for null values and for equal items
-                            if( remItem == null || addItem == null || remItem.equals( addItem ) ) { continue; };
-                            //if replace new items with another one
-                            if( addedItemsList.contains( remItem ) ) {
-                                addedItemsList.set( addedItemsList.indexOf( remItem ), addItem );
-                            } else {
-                                //for new items
-                                boolean asNew = true;
-                                //traverse updatedItemList
-                                for( Pair<T> pair : updatedItemsList ) {
-                                    //looking for match with lastValue 
-                                    //(initValue always point out to true DB data)
-                                    if( pair.lastValue.equals( remItem ) ) {
-                                        pair.setLastValue( addItem );
-                                        asNew = false;
-                                        break;
-                                    }
-                                }
-                                if( asNew ) {
-                                    updatedItemsList.add( new Pair<>( c.getFrom() + i, remItem, addItem ) );
-                                }
-                            }
-                        }
-                    } else if( c.wasRemoved() ) {
-                        //only if removed item was obtained from DB(including changed)
-                        c.getRemoved().forEach( ( item ) -> {
-                            if( !addedItemsList.contains( item ) ) {
-                                //it's not new item
-                                T inst = item;
-                                Pair remPair = null;
-                                //try to find this item in updated list
-                                //if found remove pair from updated list and add to removed
-                                for( Pair<T> pair : updatedItemsList ) {
-                                    if( pair.getLastValue().equals( item ) ) {
-                                        remPair = pair;
-                                        inst = pair.getInitValue();
-                                        break;
-                                    }
-                                }
-                                if( remPair != null )
-                                    updatedItemsList.remove( remPair );
-                                removedItemsList.add( inst );
-                            } else {
-                                addedItemsList.remove( item );
-                            }
-                        });
-                    } else if( c.wasAdded() ) {
-                        c.getAddedSubList().forEach( (item) -> {
-                            if( removedItemsList.contains( item ) ) {
-                                removedItemsList.remove( item );
-                            } else
-                                addedItemsList.add( item );
-                        });
-                    }
-                }
+    private final ListChangeListener<T> onDataChanged = ( c ) -> {
+        //indexes follow untracked changes as well
+        updateIndexes( c );
+        if( skip ) return;
+        while( c.next() ) {
+            if( c.wasPermutated() || c.wasUpdated() ) continue;
+            List<? extends T> removed = c.getRemoved();
+            List<? extends T> addedSubList = c.getAddedSubList();
+            int replaced = c.wasReplaced() ? Math.min( removed.size(), addedSubList.size() ) : 0;
+            //for each replaced items
+            for( int i = 0; i < replaced; i++ ) {
+                tracker.replaced( c.getFrom() + i, removed.get( i ), addedSubList.get( i ) );
             }
-    );
+            for( int i = replaced; i < removed.size(); i++ ) {
+                tracker.removed( removed.get( i ) );
+            }
+            for( int i = replaced; i < addedSubList.size(); i++ ) {
+                tracker.added( addedSubList.get( i ) );
+            }
+        }
+    };
+    private final WeakListChangeListener<T> listChangeListener = new WeakListChangeListener<>( onDataChanged );
 
     public BasicDAO() {
         this( null );
@@ -222,81 +346,685 @@ public abstract class BasicDAO<T> {
     }
 
     /**
-     * After reopening we need to rebind our listeners to new list.
+     * Execute query and pass every wrapped row to the consumer.
+     * Fetching stops after {@code stopFetching()} was called.
      * @param query QueryObject that provide information about this query.
-     * @return ObservableList 
+     * @param consumer receiver of wrapped rows.
      * @throws SQLException 
      */
-    public ObservableList<T> open( QueryObject query ) throws SQLException {        
-        List<T> newData = new ArrayList<>();
-        this.query = query;
-        if( query != null && getWrapper() != null && query.getConnection() != null ) {
+    protected void fetch( QueryObject query, Consumer<T> consumer ) throws SQLException {
+        fetch( query, consumer, generation.get() );
+    }
+    
+    private boolean isActual( long gen ) {
+        return !stopRequested && gen == generation.get();
+    }
+    
+    private long nextGeneration() {
+        long gen = generation.incrementAndGet();
+        stopRequested = false;
+        return gen;
+    }
+    
+    private void fetch( QueryObject query, Consumer<T> consumer, long gen ) throws SQLException {
+        if( getWrapper() != null && ConnectionProvider.isAvailable( query ) ) {
             final String QUERY_TEXT = query.getSelectText();
             if( QUERY_TEXT != null && !QUERY_TEXT.isEmpty() ) {
-                Connection con = query.getConnection();
-                try ( PreparedStatement ps =
-                        con.prepareStatement( QUERY_TEXT )) {
+                Connection con = ConnectionProvider.acquire( query );
+                StatementCache cache = StatementCache.forConnection( con );
+                PreparedStatement ps = null;
+                try {
+                    ps = cache.prepare( QUERY_TEXT, query.getResultSetType(), 
+                            query.getResultSetConcurrency() );
+                    QueryObject.applyHints( query, ps );
                     int idx = 1;
                     Object[] params = query.getParameters();
                     if( params != null )
                         for( Object param : query.getParameters() ) {
                             ps.setObject( idx++, param );
                         }
-                    ResultSet rs = ps.executeQuery();                
-                    while( rs.next() ) {
-                        newData.add( ( T ) getWrapper().wrap( rs, getWrapperClass() ) );
+                    runningStatement = ps;
+                    try( ResultSet rs = ps.executeQuery() ) {
+                        while( isActual( gen ) && rs.next() ) {
+                            consumer.accept( ( T ) getWrapper().wrap( rs, getWrapperClass() ) );
+                        }
+                    } finally {
+                        if( runningStatement == ps ) runningStatement = null;
                     }
+                } finally {
+                    cache.release( ps );
+                    ConnectionProvider.release( query, con );
                 }
             }
         }
-        data = FXCollections.observableArrayList( newData );
-        data.addListener( listChangeListener );
+    }
+    
+    /**
+     * Replace cached data with new list and rebind our listeners to it.
+     * Given list is not copied.
+     * @param newData rows that will be cached.
+     * @return ObservableList 
+     */
+    protected ObservableList<T> publish( List<T> newData ) {
+        snapshot = new ArrayList<>( newData );
+        return publish( new ObservableRowList<>( newData ) );
+    }
+    
+    private ObservableList<T> publish( ObservableList<T> newData ) {
+        tracker.clear();
+        resultKey = null;
+        rowsShared = false;
+        //changes of previous data must not be tracked
+        data.removeListener( listChangeListener );
+        data = newData;
+        //lazy list is read only, its refresh would be tracked as replacement of every row
+        //and would load all pages
+        if( !( data instanceof LazyObservableList ) ) data.addListener( listChangeListener );
+        resetIndexes();
         dataProperty.set( data );
         return data;
     }
+    
+    /**
+     * Hash indexes of cached data by names of their properties.
+     */
+    private final Map<List<String>, HashIndex<T>> hashIndexes = new LinkedHashMap<>();
+    /**
+     * Sorted indexes of cached data by names of their properties.
+     */
+    private final Map<String, SortedIndex<T>> sortedIndexes = new LinkedHashMap<>();
+    /**
+     * Views are refreshed after changes of cached data while they are reachable.
+     */
+    private final List<WeakReference<IndexedView<T>>> views = new ArrayList<>();
+    
+    private IDBPropertyReference getIndexedProperty( String name ) {
+        if( getWrapper() == null )
+            throw new IllegalStateException( "Wrapper must be set before creating index." );
+        IDBPropertyReference res = getWrapper().getPropertyByName( name );
+        if( res == null ) throw new IllegalArgumentException( "There is no property " + name );
+        return res;
+    }
+    
+    /**
+     * Rows that are indexed, lazy list is not indexed because it would load all pages.
+     * @return cached data or empty list.
+     */
+    List<T> getIndexedRows() {
+        return data instanceof LazyObservableList ? Collections.emptyList() : data;
+    }
+    
+    /**
+     * Create hash index of cached data by the properties for equality lookups.
+     * Index is kept current by changes of cached data, by {@code setPropertyValue} and 
+     * by {@code notifyUpdated}, it's rebuilt on reopening. Data of lazy opening is not indexed.
+     * @param names names of properties of the wrapper.
+     * @return index, existing one if it was already created.
+     */
+    public HashIndex<T> createHashIndex( String... names ) {
+        List<String> key = Arrays.asList( names.clone() );
+        HashIndex<T> res = hashIndexes.get( key );
+        if( res == null ) {
+            IDBPropertyReference[] refs = new IDBPropertyReference[names.length];
+            for( int i = 0; i < names.length; i++ )
+                refs[i] = getIndexedProperty( names[i] );
+            res = new HashIndex<>( refs );
+            res.reset( getIndexedRows() );
+            hashIndexes.put( key, res );
+        }
+        return res;
+    }
+    
+    /**
+     * @param names names of properties of the index.
+     * @return index or {@code null}.
+     */
+    public HashIndex<T> getHashIndex( String... names ) {
+        return hashIndexes.get( Arrays.asList( names ) );
+    }
+    
+    /**
+     * @param names names of properties of the index.
+     */
+    public void dropHashIndex( String... names ) {
+        hashIndexes.remove( Arrays.asList( names ) );
+    }
+    
+    /**
+     * Create sorted index of cached data by the property for range lookups.
+     * Index is kept current like hash index.
+     * @param name name of property of the wrapper, its values must be comparable.
+     * @return index, existing one if it was already created.
+     */
+    public SortedIndex<T> createSortedIndex( String name ) {
+        SortedIndex<T> res = sortedIndexes.get( name );
+        if( res == null ) {
+            res = new SortedIndex<>( getIndexedProperty( name ) );
+            res.reset( getIndexedRows() );
+            sortedIndexes.put( name, res );
+        }
+        return res;
+    }
+    
+    /**
+     * @param name name of property of the index.
+     * @return index or {@code null}.
+     */
+    public SortedIndex<T> getSortedIndex( String name ) {
+        return sortedIndexes.get( name );
+    }
+    
+    /**
+     * @param name name of property of the index.
+     */
+    public void dropSortedIndex( String name ) {
+        sortedIndexes.remove( name );
+    }
+    
+    /**
+     * Create read only view of cached data that is filtered by indexes,
+     * it's updated after every change of cached data while it's reachable.
+     * @return new view that shows all rows.
+     */
+    public IndexedView<T> createIndexedView() {
+        IndexedView<T> res = new IndexedView<>( this );
+        views.add( new WeakReference<>( res ) );
+        return res;
+    }
+    
+    private void resetIndexes() {
+        List<T> rows = getIndexedRows();
+        hashIndexes.values().forEach( ( index ) -> index.reset( rows ) );
+        sortedIndexes.values().forEach( ( index ) -> index.reset( rows ) );
+        forEachView( IndexedView::indexesReset );
+    }
+    
+    private void updateIndexes( ListChangeListener.Change<? extends T> c ) {
+        if( data instanceof LazyObservableList ) return;
+        boolean record = beginDelta();
+        try {
+            hashIndexes.values().forEach( ( index ) -> index.onChanged( c ) );
+            sortedIndexes.values().forEach( ( index ) -> index.onChanged( c ) );
+            if( record ) forEachView( ( view ) -> view.dataChanged( c ) );
+        } finally {
+            if( record ) endDelta();
+        }
+    }
+    
+    private void reindex( int position, T item ) {
+        if( data instanceof LazyObservableList ) return;
+        boolean record = beginDelta();
+        try {
+            hashIndexes.values().forEach( ( index ) -> index.reindex( item ) );
+            sortedIndexes.values().forEach( ( index ) -> index.reindex( item ) );
+            if( record ) {
+                RowIndex<T> index = hashIndexes.isEmpty() 
+                        ? sortedIndexes.isEmpty() ? null : sortedIndexes.values().iterator().next()
+                        : hashIndexes.values().iterator().next();
+                int count = index == null ? -1 : index.getCount( item );
+                forEachView( ( view ) -> view.rowChanged( position, item, count ) );
+            }
+        } finally {
+            if( record ) endDelta();
+        }
+    }
+    
+    /**
+     * Start recording of deltas of indexes for views.
+     * @return false if there are no views.
+     */
+    private boolean beginDelta() {
+        if( views.isEmpty() ) return false;
+        hashIndexes.values().forEach( RowIndex::beginDelta );
+        sortedIndexes.values().forEach( RowIndex::beginDelta );
+        return true;
+    }
+    
+    private void endDelta() {
+        hashIndexes.values().forEach( RowIndex::endDelta );
+        sortedIndexes.values().forEach( RowIndex::endDelta );
+    }
+    
+    private void forEachView( Consumer<IndexedView<T>> action ) {
+        for( Iterator<WeakReference<IndexedView<T>>> it = views.iterator(); it.hasNext(); ) {
+            IndexedView<T> view = it.next().get();
+            if( view == null ) {
+                it.remove();
+            } else {
+                action.accept( view );
+            }
+        }
+    }
+    
+    /**
+     * Append loaded rows to cached data as a single change.
+     * Appended rows are not tracked as added ones.
+     * @param target list that was published for current opening.
+     * @param chunk rows to append.
+     */
+    protected void appendChunk( ObservableList<T> target, List<T> chunk ) {
+        //list was replaced by another opening
+        if( target != data ) return;
+        skip = true;
+        try {
+            target.addAll( chunk );
+            snapshot.addAll( chunk );
+        } finally {
+            skip = false;
+        }
+    }
+
+    /**
+     * After reopening we need to rebind our listeners to new list.
+     * @param query QueryObject that provide information about this query.
+     * @return ObservableList 
+     * @throws SQLException 
+     */
+    public ObservableList<T> open( QueryObject query ) throws SQLException {        
+        List<T> newData = new ArrayList<>();
+        this.query = query;
+        cancelPendingOpen();
+        long gen = nextGeneration();
+        QueryResultCache.Key key = getResultKey( query );
+        fetching = true;
+        try {
+            key = fetchAll( query, key, newData, gen );
+        } finally {
+            fetching = false;
+        }
+        return publishResult( newData, key );
+    }
+    
+    private QueryResultCache.Key getResultKey( QueryObject query ) {
+        if( getEffectiveResultCache() == null || query == null || query.getSelectText() == null ) return null;
+        //results of the same query against different databases must not mix
+        Object database = query.getConnection() != null 
+                ? ConnectionPool.getPhysicalConnection( query.getConnection() ) : query.getConnectionProvider();
+        return new QueryResultCache.Key( database, getWrapperClass(), query.getSelectText(), query.getParameters() );
+    }
+    
+    private String getTableName() {
+        return getWrapperClass() == null ? null : EntityMetadata.forClass( getWrapperClass() ).getTableName();
+    }
+    
+    /**
+     * Take rows from result cache or fetch them and put to the cache.
+     * @return key of the result if the rows are the cached ones, {@code null} if they are not in the cache.
+     */
+    private QueryResultCache.Key fetchAll( QueryObject query, QueryResultCache.Key key, List<T> newData, long gen ) 
+            throws SQLException {
+        QueryResultCache cache = getEffectiveResultCache();
+        if( key != null && cache != null ) {
+            List<T> rows = ( List<T> ) cache.get( key );
+            if( rows != null ) {
+                //rows are shared only in copy-on-write mode, otherwise they would be changed in place
+                if( copyOnWrite ) {
+                    newData.addAll( rows );
+                } else {
+                    for( T row : rows )
+                        newData.add( copyRow( row ) );
+                }
+                return copyOnWrite ? key : null;
+            }
+        }
+        fetch( query, newData::add, gen );
+        //incomplete result is not cached
+        if( key == null || cache == null || !isActual( gen ) ) return null;
+        cache.put( key, newData, getTableName() );
+        return key;
+    }
+    
+    private ObservableList<T> publishResult( List<T> newData, QueryResultCache.Key key ) {
+        ObservableList<T> res = publish( newData );
+        resultKey = key;
+        rowsShared = key != null && copyOnWrite;
+        return res;
+    }
+    
+    /**
+     * Fetch rows off the FX application thread and append them to the target
+     * on FX application thread by chunks.
+     */
+    private void fetchChunks( QueryObject query, int chunkSize, ObservableList<T> target, long gen ) 
+            throws SQLException {
+        final List<T> chunk = new ArrayList<>( chunkSize );
+        fetch( query, ( row ) -> {
+            chunk.add( row );
+            if( chunk.size() >= chunkSize ) {
+                final List<T> part = new ArrayList<>( chunk );
+                DataExecutors.FX.execute( () -> appendChunk( target, part ) );
+                chunk.clear();
+            }
+        }, gen );
+        if( !chunk.isEmpty() )
+            DataExecutors.FX.execute( () -> appendChunk( target, chunk ) );
+    }
+    
+    public CompletableFuture<ObservableList<T>> openAsync( Object[] params ) {
+        if( query == null )
+            throw new RuntimeException( "Set QueryObject before calling open." );
+        query.setParameters( params );
+        return openAsync( query );
+    }
+    
+    /**
+     * Asynchronous opening.
+     * Query is executed by {@code getExecutor()}, new data replaces cached one 
+     * on FX application thread. Opening in progress is cancelled.
+     * It's expected to be called on FX application thread.
+     * Returned future is cancelled if this opening is superseded by another one.
+     * @param query QueryObject that provide information about this query.
+     * @return CompletableFuture that is completed with new data.
+     */
+    public CompletableFuture<ObservableList<T>> openAsync( QueryObject query ) {
+        return openAsync( query, 0 );
+    }
+    
+    /**
+     * Asynchronous incremental opening.
+     * Empty list is published at once, rows are fetched by {@code getExecutor()} and 
+     * appended on FX application thread by chunks of given size, each chunk is a single list change,
+     * so first rows are shown while the rest are fetched.
+     * Fetching can be stopped via {@code stopFetching()}, rows that were 
+     * already loaded stay in the list.
+     * @param query QueryObject that provide information about this query.
+     * @param chunkSize count of rows in one chunk, {@code 0} means no chunks.
+     * @return CompletableFuture that is completed when all rows are appended.
+     * @see #openAsync(data.QueryObject) 
+     */
+    public CompletableFuture<ObservableList<T>> openAsync( QueryObject query, int chunkSize ) {
+        if( chunkSize < 0 )
+            throw new IllegalArgumentException( "Chunk size can't be negative." );
+        this.query = query;
+        cancelPendingOpen();
+        final long gen = nextGeneration();
+        final CompletableFuture<ObservableList<T>> result = new CompletableFuture<>();
+        final ObservableList<T> target = chunkSize > 0 ? publish( new ArrayList<>() ) : null;
+        final QueryResultCache.Key key = target == null ? getResultKey( query ) : null;
+        pendingOpen = result;
+        fetching = true;
+        executor.execute( () -> {
+            List<T> newData = new ArrayList<>();
+            QueryResultCache.Key[] cached = { null };
+            try {
+                if( target != null ) {
+                    fetchChunks( query, chunkSize, target, gen );
+                } else {
+                    cached[0] = fetchAll( query, key, newData, gen );
+                }
+            } catch( Throwable ex ) {
+                DataExecutors.FX.execute( () -> {
+                    finishOpen( result );
+                    result.completeExceptionally( ex );
+                } );
+                return;
+            }
+            DataExecutors.FX.execute( () -> {
+                finishOpen( result );
+                if( gen == generation.get() && !result.isDone() ) {
+                    result.complete( target != null ? target : publishResult( newData, cached[0] ) );
+                } else {
+                    result.cancel( false );
+                }
+            } );
+        } );
+        return result;
+    }
+    
+    private void finishOpen( CompletableFuture<ObservableList<T>> result ) {
+        if( pendingOpen == result ) {
+            pendingOpen = null;
+            fetching = false;
+        }
+    }
+    
+    private void cancelPendingOpen() {
+        CompletableFuture<ObservableList<T>> pending = pendingOpen;
+        if( pending != null ) {
+            pendingOpen = null;
+            generation.incrementAndGet();
+            pending.cancel( false );
+            cancelRunningStatement();
+        }
+    }
+    
+    private void cancelRunningStatement() {
+        PreparedStatement ps = runningStatement;
+        if( ps != null ) {
+            try {
+                ps.cancel();
+            } catch( SQLException ex ) {
+                //statement is already finished or driver doesn't support cancelling
+            }
+        }
+    }
+    
+    /**
+     * Lazy opening.
+     * Cached data is replaced with read only {@code LazyObservableList}, 
+     * its size is obtained by count query and rows are fetched by pages on demand.
+     * Changes of the list (e.g. {@code refresh}) are not tracked, only edits of rows
+     * via {@code setPropertyValue} are, pages of edited rows stay in memory until commit or cancel.
+     * Query must order rows by unique key, so pages are stable.
+     * Opening in progress is cancelled.
+     * @param query QueryObject that provide information about this query.
+     * @param pageSize count of rows in one page.
+     * @param maxPages count of pages that are kept in memory.
+     * @return LazyObservableList.
+     */
+    public LazyObservableList<T> openLazy( QueryObject query, int pageSize, int maxPages ) {
+        if( getWrapper() == null || !ConnectionProvider.isAvailable( query ) )
+            throw new RuntimeException( "QueryObject with connection and wrapper must be set." );
+        this.query = query;
+        cancelPendingOpen();
+        nextGeneration();
+        LazyObservableList<T> list = 
+                new LazyObservableList<>( query, getWrapper(), getWrapperClass(), pageSize, maxPages );
+        //lazy list is read only, nothing to restore
+        snapshot = new ArrayList<>();
+        publish( list );
+        return list;
+    }
+    
+    /**
+     * Request to stop fetching of rows for opening in progress.
+     * Rows of incremental opening that were already loaded stay in the list.
+     */
+    public void stopFetching() {
+        stopRequested = true;
+    }
+    
+    public boolean isFetching() {
+        return fetching;
+    }
 
     abstract public Wrapper getWrapper();
 
     abstract public Class<?> getWrapperClass();
     
     /**
-     * TODO: after cancel it's needed to restore init order.
+     * Restore cached data as it was after opening or last commit.
+     * Rows are restored in their initial order by one list change.
      */
     public void cancel() {
+        if( tracker.isEmpty() ) return;
         skip = true;
         try {
-            updatedItemsList.forEach( ( pair ) -> {
-                int i = pair.getIdx();
-                //if saved index not valid
-                if( i < 0 || i >= data.size() || !data.get( i ).equals( pair.getLastValue() ) )
-                    i = data.indexOf( pair.getLastValue() );
-                if( 0 <= i && i < data.size() )
-                    data.set( i, pair.initValue );
-            } );
-            updatedItemsList.clear();
-            //ignore duplicates( list order may be change )
-            addedItemsList.forEach( ( item ) -> {
-                data.remove( item );
-            });
-            addedItemsList.clear();
-            //restore items in not init order
-            removedItemsList.forEach( ( item ) -> {
-                data.add( item );
-            } );
-            removedItemsList.clear();            
+            if( getWrapper() != null ) {
+                List<IDBPropertyReference> props = getWrapper().getProperties();
+                tracker.getUpdated().forEach( ( pair ) -> pair.restoreInitFieldValues( props ) );
+            }
+            //rows of lazy list can be changed only in place
+            if( data instanceof LazyObservableList ) {
+                LazyObservableList<T> lazy = ( LazyObservableList<T> ) data;
+                for( Pair<T> pair : tracker.getUpdated() ) {
+                    if( pair.getIdx() != null && pair.getIdx() < lazy.size() ) lazy.notifyUpdated( pair.getIdx() );
+                }
+                lazy.unpinAll();
+            } else {
+                data.setAll( snapshot );
+            }
+            tracker.clear();
         } finally {
             skip = false;
         }
     }
     
-    public void commit() {
-        
-        for( Pair<T> pair : updatedItemsList ) {
-            
-            
-            
+    /**
+     * @param ref property of the wrapper.
+     * @return ordinal of the property, {@code -1} if the wrapper does not contain it.
+     */
+    public int getPropertyOrdinal( IDBPropertyReference ref ) {
+        return getWrapper() == null ? -1 : getWrapper().getPropertyOrdinal( ref );
+    }
+    
+    /**
+     * Change value of the property of the row at given position.
+     * For rows read from DB changed properties are tracked, so commit writes only them
+     * and cancel restores initial values.
+     * Observers of cached data are not notified, see {@code notifyUpdated}, 
+     * but indexes and indexed views are updated.
+     * @param index position of the row in cached data.
+     * @param ref property of the wrapper.
+     * @param value new value.
+     * @return true if value was changed.
+     */
+    public boolean setPropertyValue( int index, IDBPropertyReference ref, Object value ) {
+        T item = data.get( index );
+        Object oldValue = ref.get( item );
+        if( Objects.equals( oldValue, value ) ) return false;
+        if( !skip && isShared( item ) ) {
+            T copy = copyRow( item );
+            ref.set( copy, value );
+            //it's tracked as replacement of the shared row
+            data.set( index, copy );
+            return true;
         }
-        
+        //in copy-on-write mode cached rows are never changed
+        if( resultKey != null && !( rowsShared && copyOnWrite ) ) {
+            //changed rows must not be given to next openings
+            QueryResultCache cache = getEffectiveResultCache();
+            if( cache != null ) cache.remove( resultKey );
+            resultKey = null;
+        }
+        int ordinal = getPropertyOrdinal( ref );
+        if( !skip && ordinal >= 0 && ref.isPersistable() && !tracker.isAdded( item ) ) {
+            Pair<T> pair = tracker.getUpdated( item );
+            if( pair == null ) {
+                pair = new Pair<>( index, item, item );
+                tracker.putUpdated( pair );
+            }
+            pair.fieldChanged( ordinal, getWrapper().getProperties().size(), ref, oldValue, value );
+            if( !pair.hasChanges() ) tracker.removeUpdated( item );
+        }
+        //edited row must not be evicted and read again from DB
+        if( data instanceof LazyObservableList ) ( ( LazyObservableList<T> ) data ).pin( index );
+        ref.set( item, value );
+        reindex( index, item );
+        return true;
+    }
+    
+    /**
+     * Notify observers of cached data that properties of the row were changed in place, 
+     * e.g. by {@code setPropertyValue}. Update change is fired, so the row is not 
+     * tracked as replaced. If cached data doesn't support update changes 
+     * the row is replaced by itself.
+     * @param index position of the row in cached data.
+     */
+    public void notifyUpdated( int index ) {
+        if( data instanceof ObservableRowList ) {
+            ( ( ObservableRowList<T> ) data ).notifyUpdated( index );
+        } else if( data instanceof LazyObservableList ) {
+            //lazy list is read only
+            ( ( LazyObservableList<T> ) data ).notifyUpdated( index );
+        } else {
+            data.set( index, data.get( index ) );
+        }
+    }
+    
+    /**
+     * @param item row of cached data.
+     * @return true if the row is shared with other DAOs in copy-on-write mode, 
+     * it is not added and it is not a copy of another row.
+     */
+    public boolean isShared( T item ) {
+        if( !rowsShared || !copyOnWrite || tracker.isAdded( item ) ) return false;
+        Pair<T> pair = tracker.getUpdated( item );
+        return pair == null || pair.getInitValue() == item;
+    }
+    
+    /**
+     * Copy of the row for copy-on-write mode.
+     * Values of readable and writable properties of the wrapper are copied.
+     * @param item shared row.
+     * @return new row.
+     */
+    protected T copyRow( T item ) {
+        try {
+            T copy = ( T ) item.getClass().newInstance();
+            for( Object o : getWrapper().getProperties() ) {
+                IDBPropertyReference ref = ( IDBPropertyReference ) o;
+                if( ref.isReadable() && ref.isWritable() )
+                    ref.set( copy, ref.get( item ) );
+            }
+            return copy;
+        } catch( InstantiationException | IllegalAccessException ex ) {
+            throw new RuntimeException( "Row can't be copied: " + item.getClass().getName(), ex );
+        }
+    }
+    
+    /**
+     * @param item row of cached data.
+     * @return ordinals of changed properties of the row, empty if there are no changes.
+     */
+    public BitSet getDirtyFields( T item ) {
+        Pair<T> pair = tracker.getUpdated( item );
+        return pair == null ? new BitSet() : pair.getDirtyFields();
+    }
+    
+    /**
+     * Write tracked changes to DB in one transaction, 
+     * statements are generated by {@code SQLCommitter}.
+     * Tracked changes are cleared after successful commit.
+     * Cached results of changed tables are invalidated in the shared cache and in the result cache.
+     * @throws SQLException 
+     */
+    public void commit() throws SQLException {
+        if( !ConnectionProvider.isAvailable( query ) || getWrapper() == null )
+            throw new RuntimeException( "Set QueryObject with connection before calling commit." );
+        Connection con = ConnectionProvider.acquire( query );
+        try {
+            new SQLCommitter<T>( getWrapper(), getWrapperClass(), query.getKeyFields() )
+                    .commit( con, tracker.getAdded(), tracker.getUpdated(), tracker.getRemoved() );
+        } finally {
+            ConnectionProvider.release( query, con );
+        }
+        invalidateResults();
+        tracker.clear();
+        if( data instanceof LazyObservableList ) {
+            //rows are in DB now, copy of lazy list would load all pages
+            ( ( LazyObservableList<T> ) data ).unpinAll();
+        } else {
+            snapshot = new ArrayList<>( data );
+        }
+    }
+    
+    private void invalidateResults() {
+        if( tracker.isEmpty() ) return;
+        Set<String> tables = new HashSet<>();
+        tables.add( getTableName() );
+        for( T item : tracker.getAdded() ) 
+            tables.add( EntityMetadata.forInstance( item ).getTableName() );
+        for( T item : tracker.getRemoved() ) 
+            tables.add( EntityMetadata.forInstance( item ).getTableName() );
+        for( Pair<T> pair : tracker.getUpdated() ) 
+            tables.add( EntityMetadata.forInstance( pair.getLastValue() ).getTableName() );
+        QueryResultCache cache = getEffectiveResultCache();
+        for( String table : tables ) {
+            QueryResultCache.getShared().invalidate( table );
+            if( cache != null ) cache.invalidate( table );
+        }
+        resultKey = null;
     }
 
 }
@@ -0,0 +1,208 @@
+package data.managers;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Tracks added, updated and removed rows of {@code BasicDAO}.
+ * Rows are indexed by identity, so every operation is O(1) regardless of
+ * count of changes. Order of tracking is preserved.
+ * Lists of tracked rows are read only live views, they are rebuilt only after changes
+ * of the tracker, so reading them in a loop costs nothing.
+ *
+ * @author Belkin Sergei
+ * @param <T> type of rows.
+ */
+class ChangeTracker<T> {
+
+    /**
+     * Identity key of a row.
+     */
+    private static final class Key<T> {
+
+        private final T item;
+
+        Key( T item ) {
+            this.item = item;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            return obj instanceof Key && ( ( Key ) obj ).item == item;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode( item );
+        }
+
+    }
+
+    /**
+     * Row and count of its occurences, list may contain the same row several times.
+     */
+    private final Map<Key<T>, Integer> added = new LinkedHashMap<>();
+    private final Map<Key<T>, Integer> removed = new LinkedHashMap<>();
+    /**
+     * Updated rows by their last values.
+     */
+    private final Map<Key<T>, BasicDAO.Pair<T>> updated = new LinkedHashMap<>();
+    /**
+     * Count of changes of the tracker, views are rebuilt when it changes.
+     */
+    private int version = 0;
+
+    private final List<T> addedView = new View<>( () -> toList( added ) );
+    private final List<T> removedView = new View<>( () -> toList( removed ) );
+    private final List<BasicDAO.Pair<T>> updatedView = new View<>( () -> new ArrayList<>( updated.values() ) );
+
+    /**
+     * Read only live view of tracked rows.
+     */
+    private final class View<E> extends AbstractList<E> {
+
+        private final Supplier<List<E>> source;
+        private List<E> rows;
+        private int rowsVersion = -1;
+
+        View( Supplier<List<E>> source ) {
+            this.source = source;
+        }
+
+        private List<E> rows() {
+            if( rowsVersion != version ) {
+                rows = source.get();
+                rowsVersion = version;
+            }
+            return rows;
+        }
+
+        @Override
+        public E get( int index ) {
+            return rows().get( index );
+        }
+
+        @Override
+        public int size() {
+            return rows().size();
+        }
+
+    }
+
+    private static <T> void increment( Map<Key<T>, Integer> map, T item ) {
+        Key<T> key = new Key<>( item );
+        Integer count = map.get( key );
+        map.put( key, count == null ? 1 : count + 1 );
+    }
+
+    private static <T> boolean decrement( Map<Key<T>, Integer> map, T item ) {
+        Key<T> key = new Key<>( item );
+        Integer count = map.get( key );
+        if( count == null ) return false;
+        if( count > 1 ) {
+            map.put( key, count - 1 );
+        } else {
+            map.remove( key );
+        }
+        return true;
+    }
+
+    private static <T> List<T> toList( Map<Key<T>, Integer> map ) {
+        List<T> res = new ArrayList<>( map.size() );
+        for( Map.Entry<Key<T>, Integer> e : map.entrySet() ) {
+            for( int i = 0; i < e.getValue(); i++ )
+                res.add( e.getKey().item );
+        }
+        return res;
+    }
+
+    /**
+     * Row at position {@code idx} was replaced.
+     */
+    void replaced( int idx, T remItem, T addItem ) {
+        //No actions for null values and for the same items
+        if( remItem == null || addItem == null || remItem == addItem ) return;
+        version++;
+        //if replace new items with another one
+        if( decrement( added, remItem ) ) {
+            increment( added, addItem );
+        } else {
+            BasicDAO.Pair<T> pair = updated.remove( new Key<>( remItem ) );
+            //initValue always point out to true DB data
+            if( pair == null ) {
+                pair = new BasicDAO.Pair<>( idx, remItem, addItem );
+            } else {
+                //row that was changed in place is replaced: the pair keeps initial values 
+                //and dirty fields of those changes, initValue itself holds changed values
+                pair.setLastValue( addItem );
+            }
+            updated.put( new Key<>( addItem ), pair );
+        }
+    }
+
+    void removed( T item ) {
+        version++;
+        //only if removed item was obtained from DB(including changed)
+        if( !decrement( added, item ) ) {
+            BasicDAO.Pair<T> pair = updated.remove( new Key<>( item ) );
+            increment( removed, pair == null ? item : pair.getInitValue() );
+        }
+    }
+
+    void added( T item ) {
+        version++;
+        if( !decrement( removed, item ) ) {
+            increment( added, item );
+        }
+    }
+
+    boolean isAdded( T item ) {
+        return added.containsKey( new Key<>( item ) );
+    }
+
+    /**
+     * @param item last value of updated row.
+     * @return pair or {@code null} if the row was not updated.
+     */
+    BasicDAO.Pair<T> getUpdated( T item ) {
+        return updated.get( new Key<>( item ) );
+    }
+
+    void putUpdated( BasicDAO.Pair<T> pair ) {
+        version++;
+        updated.put( new Key<>( pair.getLastValue() ), pair );
+    }
+
+    void removeUpdated( T item ) {
+        version++;
+        updated.remove( new Key<>( item ) );
+    }
+
+    boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && updated.isEmpty();
+    }
+
+    void clear() {
+        version++;
+        added.clear();
+        removed.clear();
+        updated.clear();
+    }
+
+    List<T> getAdded() {
+        return addedView;
+    }
+
+    List<T> getRemoved() {
+        return removedView;
+    }
+
+    List<BasicDAO.Pair<T>> getUpdated() {
+        return updatedView;
+    }
+
+}
@@ -0,0 +1,153 @@
+package data.managers;
+
+import data.wrappers.IDBPropertyReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javafx.collections.ListChangeListener;
+
+/**
+ * Hash index of rows of an observable list by values of one or more properties.
+ * Positions of rows are computed lazily, they are recomputed only after
+ * changes that shift rows or permutations, so locating of a row is O(1)
+ * between such changes.
+ *
+ * @author Belkin Sergei
+ * @param <T> type of rows.
+ */
+public class HashIndex<T> extends RowIndex<T> {
+
+    /**
+     * Rows by key, value is a row or bucket of rows with the same key.
+     */
+    private final Map<Object, Object> rows = new HashMap<>();
+    /**
+     * Position of the first occurence of every row, it's valid if positionsValid.
+     * {@code null} position means that the row has to be searched again.
+     */
+    private final Map<T, Integer> positions = new IdentityHashMap<>();
+    private boolean positionsValid = false;
+
+    /**
+     * @param properties properties that compose the key.
+     */
+    public HashIndex( IDBPropertyReference... properties ) {
+        super( properties );
+    }
+
+    /**
+     * Index all rows of the attached list from scratch.
+     */
+    public void rebuild() {
+        reset( getList() );
+    }
+
+    @Override
+    public void reset( List<T> list ) {
+        positions.clear();
+        positionsValid = false;
+        super.reset( list );
+    }
+
+    @Override
+    protected void put( Object key, T row ) {
+        putRow( rows, key, row );
+    }
+
+    @Override
+    protected void delete( Object key, T row ) {
+        deleteRow( rows, key, row );
+    }
+
+    @Override
+    protected void clear() {
+        rows.clear();
+    }
+
+    @Override
+    protected void changed( ListChangeListener.Change<? extends T> c ) {
+        if( c.wasPermutated() ) {
+            positionsValid = false;
+        } else if( !c.wasUpdated() ) {
+            for( T row : c.getRemoved() ) {
+                //other occurence of the row may be anywhere
+                if( isIndexed( row ) ) {
+                    positionsValid = false;
+                } else {
+                    positions.remove( row );
+                }
+            }
+            boolean shift = c.getRemovedSize() != c.getAddedSize()
+                    && c.getTo() < c.getList().size();
+            if( shift ) {
+                positionsValid = false;
+            } else if( positionsValid ) {
+                for( int i = c.getFrom(); i < c.getTo(); i++ ) {
+                    T row = c.getList().get( i );
+                    //row occurs elsewhere as well, its known position may be not the first one
+                    positions.put( row, positions.containsKey( row ) ? null : i );
+                }
+            }
+        }
+    }
+
+    /**
+     * @param values values of the properties in their order.
+     * @return rows with given values in order of their indexing.
+     */
+    public List<T> get( Object... values ) {
+        Object bucket = rows.get( toKey( values ) );
+        if( bucket == null ) return Collections.emptyList();
+        List<T> res = new ArrayList<>();
+        collectRows( bucket, res );
+        return Collections.unmodifiableList( res );
+    }
+
+    /**
+     * @param values values of the properties in their order.
+     * @return true if there is a row with given values.
+     */
+    public boolean contains( Object... values ) {
+        return rows.containsKey( toKey( values ) );
+    }
+
+    /**
+     * @param values values of the properties in their order.
+     * @return position of the first row in the list with given values or {@code -1}.
+     */
+    public int indexOf( Object... values ) {
+        Object bucket = rows.get( toKey( values ) );
+        List<T> list = getList();
+        if( bucket == null || list == null ) return -1;
+        if( !positionsValid ) {
+            positions.clear();
+            for( int i = list.size() - 1; i >= 0; i-- ) {
+                T row = list.get( i );
+                if( row != null ) positions.put( row, i );
+            }
+            positionsValid = true;
+        }
+        List<T> found = new ArrayList<>( 1 );
+        collectRows( bucket, found );
+        int res = -1;
+        for( T row : found ) {
+            Integer pos = positions.get( row );
+            if( pos == null && positions.containsKey( row ) ) {
+                pos = identityIndexOf( list, row );
+                positions.put( row, pos );
+            }
+            if( pos != null && pos >= 0 && ( res < 0 || pos < res ) ) res = pos;
+        }
+        return res;
+    }
+
+    private static <T> int identityIndexOf( List<T> list, T row ) {
+        for( int i = 0; i < list.size(); i++ )
+            if( list.get( i ) == row ) return i;
+        return -1;
+    }
+
+}
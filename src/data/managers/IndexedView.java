@@ -0,0 +1,568 @@
+package data.managers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableListBase;
+
+/**
+ * Read only filtered view of cached data of {@code BasicDAO}.
+ * Condition of the view is looked up in an index of the DAO, so filtering
+ * costs O(1) for equality and O(log n) for range plus count of found rows instead of
+ * checking every row like {@code FilteredList} does. Optional predicate is checked
+ * only for found rows.
+ * Rows of equality condition follow in order of their indexing, rows of range
+ * condition follow in order of values, rows without condition follow in order of cached data.
+ * Data of lazy opening is not indexed, so the view is empty for it.
+ * The view is updated by the DAO after every change of cached data: view with condition
+ * looks only at rows that were added, removed or rekeyed in its index by the change,
+ * view without condition follows positions of the change like {@code FilteredList}.
+ * Only moved rows are published as changes. The view is not updated after its index is dropped.
+ *
+ * @author Belkin Sergei
+ * @param <T> type of rows.
+ */
+public class IndexedView<T> extends ObservableListBase<T> {
+
+    private final BasicDAO<T> dao;
+    private List<T> rows = new ArrayList<>();
+    /**
+     * Positions in cached data of rows of the view without condition.
+     */
+    private int[] sources = new int[0];
+    /**
+     * Condition of rows, {@code null} means all rows of cached data.
+     */
+    private Condition condition;
+    private Predicate<? super T> predicate;
+
+    /**
+     * Condition that is looked up in an index.
+     * Rows of the view with the same key follow in order of their indexing.
+     */
+    private abstract class Condition {
+
+        /**
+         * @return index of the condition or {@code null} if it was dropped.
+         */
+        abstract RowIndex<T> findIndex();
+
+        /**
+         * @return rows of the index that meet the condition.
+         */
+        abstract Collection<T> lookup( RowIndex<T> index );
+
+        /**
+         * @return true if rows with the key meet the condition.
+         */
+        abstract boolean matches( RowIndex<T> index, Object key );
+
+        /**
+         * @return rows of the index with the key in order of their indexing.
+         */
+        abstract List<T> rowsOf( RowIndex<T> index, Object key );
+
+        /**
+         * @param keys keys of rows of the view.
+         * @return position of the first row of the view with the key or position where it would be.
+         */
+        abstract int runStart( RowIndex<T> index, Object key, Function<T, Object> keys );
+
+        /**
+         * @param keys keys of rows of the view.
+         * @return position after the last row of the view with the key.
+         */
+        abstract int runEnd( RowIndex<T> index, Object key, Function<T, Object> keys );
+
+        RowIndex<T> getIndex() {
+            RowIndex<T> res = findIndex();
+            if( res == null ) throw new IllegalStateException( this + " was dropped." );
+            return res;
+        }
+
+    }
+
+    private final class EqualsCondition extends Condition {
+
+        private final String[] names;
+        private final Object[] values;
+
+        EqualsCondition( String[] names, Object[] values ) {
+            this.names = names.clone();
+            this.values = values.clone();
+        }
+
+        @Override
+        RowIndex<T> findIndex() {
+            return dao.getHashIndex( names );
+        }
+
+        @Override
+        Collection<T> lookup( RowIndex<T> index ) {
+            return ( ( HashIndex<T> ) index ).get( values );
+        }
+
+        @Override
+        boolean matches( RowIndex<T> index, Object key ) {
+            return Objects.equals( key, index.toKey( values ) );
+        }
+
+        @Override
+        List<T> rowsOf( RowIndex<T> index, Object key ) {
+            return ( ( HashIndex<T> ) index ).get( values );
+        }
+
+        @Override
+        int runStart( RowIndex<T> index, Object key, Function<T, Object> keys ) {
+            return 0;
+        }
+
+        @Override
+        int runEnd( RowIndex<T> index, Object key, Function<T, Object> keys ) {
+            return rows.size();
+        }
+
+        @Override
+        public String toString() {
+            return "Hash index on " + Arrays.toString( names );
+        }
+
+    }
+
+    private final class RangeCondition extends Condition {
+
+        private final String name;
+        private final Object from;
+        private final boolean fromInclusive;
+        private final Object to;
+        private final boolean toInclusive;
+
+        RangeCondition( String name, Object from, boolean fromInclusive, Object to, boolean toInclusive ) {
+            this.name = name;
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+        }
+
+        @Override
+        RowIndex<T> findIndex() {
+            return dao.getSortedIndex( name );
+        }
+
+        @Override
+        Collection<T> lookup( RowIndex<T> index ) {
+            return ( ( SortedIndex<T> ) index ).range( from, fromInclusive, to, toInclusive );
+        }
+
+        @Override
+        boolean matches( RowIndex<T> index, Object key ) {
+            return ( ( SortedIndex<T> ) index ).inRange( key, from, fromInclusive, to, toInclusive );
+        }
+
+        @Override
+        List<T> rowsOf( RowIndex<T> index, Object key ) {
+            return ( ( SortedIndex<T> ) index ).get( key );
+        }
+
+        @Override
+        int runStart( RowIndex<T> index, Object key, Function<T, Object> keys ) {
+            return bound( ( SortedIndex<T> ) index, key, keys, false );
+        }
+
+        @Override
+        int runEnd( RowIndex<T> index, Object key, Function<T, Object> keys ) {
+            return bound( ( SortedIndex<T> ) index, key, keys, true );
+        }
+
+        private int bound( SortedIndex<T> index, Object key, Function<T, Object> keys, boolean upper ) {
+            int low = 0, high = rows.size();
+            while( low < high ) {
+                int mid = ( low + high ) >>> 1;
+                int res = index.compare( keys.apply( rows.get( mid ) ), key );
+                if( res < 0 || upper && res == 0 ) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        public String toString() {
+            return "Sorted index on " + name;
+        }
+
+    }
+
+    IndexedView( BasicDAO<T> dao ) {
+        this.dao = dao;
+        refresh();
+    }
+
+    /**
+     * Show rows with given values of properties, hash index on the properties must exist.
+     * @param names names of properties of the index.
+     * @param values values of the properties in their order.
+     */
+    public void setEquals( String[] names, Object[] values ) {
+        if( dao.getHashIndex( names ) == null )
+            throw new IllegalStateException( "There is no hash index on " + Arrays.toString( names ) );
+        condition = new EqualsCondition( names, values );
+        refresh();
+    }
+
+    /**
+     * Show rows with given value of property, hash index on the property must exist.
+     * @param name name of the property.
+     * @param value value of the property.
+     */
+    public void setEquals( String name, Object value ) {
+        setEquals( new String[] { name }, new Object[] { value } );
+    }
+
+    /**
+     * Show rows with values of property in the range, sorted index on the property must exist.
+     * @param name name of the property.
+     * @param from low bound, {@code null} means no bound.
+     * @param fromInclusive true if the low bound is included.
+     * @param to high bound, {@code null} means no bound.
+     * @param toInclusive true if the high bound is included.
+     */
+    public void setRange( String name, Object from, boolean fromInclusive, Object to, boolean toInclusive ) {
+        if( dao.getSortedIndex( name ) == null )
+            throw new IllegalStateException( "There is no sorted index on " + name );
+        condition = new RangeCondition( name, from, fromInclusive, to, toInclusive );
+        refresh();
+    }
+
+    /**
+     * Show all rows of cached data that meet the predicate.
+     */
+    public void clearCondition() {
+        condition = null;
+        refresh();
+    }
+
+    public Predicate<? super T> getPredicate() {
+        return predicate;
+    }
+
+    /**
+     * @param predicate additional filter of rows that meet the condition, {@code null} accepts all rows.
+     */
+    public void setPredicate( Predicate<? super T> predicate ) {
+        this.predicate = predicate;
+        refresh();
+    }
+
+    private boolean accepts( T row ) {
+        return predicate == null || predicate.test( row );
+    }
+
+    /**
+     * Look up all rows again, it's called by the DAO after reopening.
+     */
+    public void refresh() {
+        List<T> res = new ArrayList<>();
+        int[] positions = new int[0];
+        if( condition == null ) {
+            List<T> source = dao.getIndexedRows();
+            positions = new int[source.size()];
+            for( int i = 0; i < source.size(); i++ ) {
+                T row = source.get( i );
+                if( accepts( row ) ) {
+                    positions[res.size()] = i;
+                    res.add( row );
+                }
+            }
+        } else {
+            for( T row : condition.lookup( condition.getIndex() ) ) {
+                if( accepts( row ) ) res.add( row );
+            }
+        }
+        sources = positions;
+        if( isSame( res ) ) return;
+        List<T> removed = rows;
+        rows = res;
+        beginChange();
+        try {
+            if( removed.isEmpty() ) {
+                nextAdd( 0, res.size() );
+            } else {
+                nextReplace( 0, res.size(), removed );
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Look up all rows again after indexes were rebuilt, it's called by the DAO.
+     */
+    void indexesReset() {
+        if( condition == null || condition.findIndex() != null ) refresh();
+    }
+
+    private boolean isSame( List<T> res ) {
+        if( res.size() != rows.size() ) return false;
+        for( int i = 0; i < res.size(); i++ ) {
+            if( res.get( i ) != rows.get( i ) ) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Apply change of cached data, it's called by the DAO after indexes applied it.
+     * @param c change, it's iterated from the beginning.
+     */
+    void dataChanged( ListChangeListener.Change<? extends T> c ) {
+        if( condition != null ) {
+            List<T> changed = new ArrayList<>();
+            c.reset();
+            while( c.next() ) {
+                if( c.wasUpdated() ) {
+                    for( int i = c.getFrom(); i < c.getTo(); i++ )
+                        changed.add( c.getList().get( i ) );
+                }
+            }
+            c.reset();
+            applyDelta( changed );
+            return;
+        }
+        beginChange();
+        try {
+            c.reset();
+            while( c.next() ) {
+                if( c.wasPermutated() ) {
+                    permute( c );
+                } else if( c.wasUpdated() ) {
+                    for( int i = c.getFrom(); i < c.getTo(); i++ )
+                        recheck( i, c.getList().get( i ), true );
+                } else {
+                    replace( c );
+                }
+            }
+            c.reset();
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Apply change of the row in place, it's called by the DAO after indexes applied it.
+     * @param position position of the row in cached data.
+     * @param row row.
+     * @param count count of occurences of the row in cached data, {@code -1} if it's unknown.
+     */
+    void rowChanged( int position, T row, int count ) {
+        if( condition != null ) {
+            applyDelta( Collections.singletonList( row ) );
+            return;
+        }
+        if( predicate == null ) return;
+        beginChange();
+        try {
+            recheck( position, row, false );
+            //other occurences of the row are looked for only if they can exist
+            if( count != 1 ) {
+                List<T> source = dao.getIndexedRows();
+                for( int i = 0; i < source.size(); i++ ) {
+                    if( i != position && source.get( i ) == row ) recheck( i, row, false );
+                }
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Move rows that were touched in the index of the condition.
+     * @param changed rows that were changed in place, predicate is checked for them again.
+     */
+    private void applyDelta( List<T> changed ) {
+        RowIndex<T> index = condition.findIndex();
+        if( index == null ) return;
+        Map<T, Object> touched = index.getTouched();
+        if( touched.isEmpty() && ( changed.isEmpty() || predicate == null ) ) return;
+        //touched rows in the view are still placed by their previous keys
+        Function<T, Object> oldKeys = ( row ) -> touched.containsKey( row ) ? touched.get( row ) : index.getKey( row );
+        Function<T, Object> keys = index::getKey;
+        beginChange();
+        try {
+            for( Map.Entry<T, Object> entry : touched.entrySet() ) {
+                Object oldKey = entry.getValue();
+                if( oldKey == RowIndex.NOT_INDEXED || !condition.matches( index, oldKey ) ) continue;
+                int pos = find( index, entry.getKey(), oldKey, oldKeys );
+                if( pos >= 0 ) nextRemove( pos, rows.remove( pos ) );
+            }
+            //rows with the same keys that meet the predicate now
+            List<T> accepted = new ArrayList<>();
+            if( predicate != null ) {
+                Set<T> checked = Collections.newSetFromMap( new IdentityHashMap<>() );
+                for( T row : changed ) {
+                    if( touched.containsKey( row ) || !index.isIndexed( row ) || !checked.add( row ) ) continue;
+                    Object key = index.getKey( row );
+                    if( !condition.matches( index, key ) ) continue;
+                    int pos = find( index, row, key, keys );
+                    if( predicate.test( row ) ) {
+                        if( pos < 0 ) accepted.add( row );
+                    } else if( pos >= 0 ) {
+                        nextRemove( pos, rows.remove( pos ) );
+                    }
+                }
+            }
+            //touched rows were put to the end of their buckets, the last putting counts
+            List<T> putRows = index.getPutRows();
+            Set<T> placed = Collections.newSetFromMap( new IdentityHashMap<>() );
+            List<T> order = new ArrayList<>();
+            for( int i = putRows.size() - 1; i >= 0; i-- ) {
+                if( placed.add( putRows.get( i ) ) ) order.add( putRows.get( i ) );
+            }
+            for( int i = order.size() - 1; i >= 0; i-- ) {
+                T row = order.get( i );
+                if( !index.isIndexed( row ) ) continue;
+                Object key = index.getKey( row );
+                if( !condition.matches( index, key ) || !accepts( row ) ) continue;
+                int pos = condition.runEnd( index, key, keys );
+                rows.add( pos, row );
+                nextAdd( pos, pos + 1 );
+            }
+            for( T row : accepted ) {
+                Object key = index.getKey( row );
+                int pos = condition.runStart( index, key, keys ), end = condition.runEnd( index, key, keys );
+                for( T other : condition.rowsOf( index, key ) ) {
+                    if( other == row ) break;
+                    if( pos < end && rows.get( pos ) == other ) pos++;
+                }
+                rows.add( pos, row );
+                nextAdd( pos, pos + 1 );
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * @param keys keys of rows of the view.
+     * @return position of the row in the view or {@code -1}.
+     */
+    private int find( RowIndex<T> index, T row, Object key, Function<T, Object> keys ) {
+        int end = condition.runEnd( index, key, keys );
+        for( int i = condition.runStart( index, key, keys ); i < end; i++ ) {
+            if( rows.get( i ) == row ) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return position of the first row of the view without condition
+     * with position in cached data not less than given one.
+     */
+    private int lowerBound( int position ) {
+        int low = 0, high = rows.size();
+        while( low < high ) {
+            int mid = ( low + high ) >>> 1;
+            if( sources[mid] < position ) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void insertRow( int pos, T row, int position ) {
+        int size = rows.size();
+        if( size == sources.length ) sources = Arrays.copyOf( sources, Math.max( 16, size * 2 ) );
+        System.arraycopy( sources, pos, sources, pos + 1, size - pos );
+        sources[pos] = position;
+        rows.add( pos, row );
+    }
+
+    private void removeRows( int from, int to ) {
+        System.arraycopy( sources, to, sources, from, rows.size() - to );
+        rows.subList( from, to ).clear();
+    }
+
+    /**
+     * Check predicate for the row that was changed in place.
+     * @param update true to publish update of the row that stays in the view.
+     */
+    private void recheck( int position, T row, boolean update ) {
+        int pos = lowerBound( position );
+        boolean present = pos < rows.size() && sources[pos] == position;
+        boolean accepted = accepts( row );
+        if( present && !accepted ) {
+            removeRows( pos, pos + 1 );
+            nextRemove( pos, row );
+        } else if( !present && accepted ) {
+            insertRow( pos, row, position );
+            nextAdd( pos, pos + 1 );
+        } else if( present && update ) {
+            nextUpdate( pos );
+        }
+    }
+
+    private void replace( ListChangeListener.Change<? extends T> c ) {
+        int from = c.getFrom(), shift = c.getAddedSize() - c.getRemovedSize();
+        int start = lowerBound( from ), end = lowerBound( from + c.getRemovedSize() );
+        if( end > start ) {
+            List<T> removed = new ArrayList<>( rows.subList( start, end ) );
+            removeRows( start, end );
+            nextRemove( start, removed );
+        }
+        for( int i = start; i < rows.size(); i++ )
+            sources[i] += shift;
+        int pos = start;
+        for( int i = from; i < c.getTo(); i++ ) {
+            T row = c.getList().get( i );
+            if( accepts( row ) ) insertRow( pos++, row, i );
+        }
+        if( pos > start ) nextAdd( start, pos );
+    }
+
+    private void permute( ListChangeListener.Change<? extends T> c ) {
+        int start = lowerBound( c.getFrom() ), end = lowerBound( c.getTo() );
+        if( end - start < 2 ) {
+            for( int i = start; i < end; i++ )
+                sources[i] = c.getPermutation( sources[i] );
+            return;
+        }
+        //new position in cached data and old position in the view
+        long[] moved = new long[end - start];
+        for( int i = start; i < end; i++ )
+            moved[i - start] = ( long ) c.getPermutation( sources[i] ) << 32 | i;
+        Arrays.sort( moved );
+        List<T> old = new ArrayList<>( rows.subList( start, end ) );
+        int[] perm = new int[end - start];
+        for( int i = start; i < end; i++ ) {
+            int from = ( int ) moved[i - start];
+            perm[from - start] = i;
+            rows.set( i, old.get( from - start ) );
+            sources[i] = ( int ) ( moved[i - start] >>> 32 );
+        }
+        nextPermutation( start, end, perm );
+    }
+
+    @Override
+    public T get( int index ) {
+        return rows.get( index );
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+
+}
@@ -0,0 +1,247 @@
+package data.managers;
+
+import data.ConnectionProvider;
+import data.QueryObject;
+import data.StatementCache;
+import data.wrappers.Wrapper;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javafx.collections.ObservableListBase;
+
+/**
+ * Read only {@code ObservableList} which rows are materialized on demand.
+ * Size of the list is obtained by count query, rows are fetched by pages
+ * when they are requested by {@code get(int)}. Only last used pages are kept
+ * in memory, so working set is bounded regardless of size of the query.
+ * Paging relies on Firebird derived tables and {@code ROWS} clause,
+ * override {@code getCountText} and {@code getPageText} for other dialects.
+ * The query must order rows by {@code ORDER BY} with unique key, otherwise DB is free
+ * to return rows in different order for every page and page boundaries are not stable.
+ * Pages with rows that were changed in place are pinned by {@code pin}, they are not evicted
+ * until {@code unpinAll}, so changed rows are not replaced by fresh copies from DB.
+ *
+ * @author Belkin Sergei
+ * @param <T> type of rows.
+ */
+public class LazyObservableList<T> extends ObservableListBase<T> {
+
+    private final QueryObject query;
+    private final Wrapper wrapper;
+    private final Class<?> wrapperClass;
+    private final int pageSize;
+    private final Map<Integer, List<T>> pages;
+    /**
+     * Pages with changed rows, they are not evicted.
+     */
+    private final Map<Integer, List<T>> pinned = new HashMap<>();
+    private int size = -1;
+
+    /**
+     * @param query QueryObject that provide information about this query.
+     * @param wrapper wrapper for rows.
+     * @param wrapperClass class that will be instantiated for rows.
+     * @param pageSize count of rows in one page.
+     * @param maxPages count of pages that are kept in memory.
+     */
+    public LazyObservableList( QueryObject query, Wrapper wrapper, Class<?> wrapperClass,
+            int pageSize, int maxPages ) {
+        if( query == null || wrapper == null || wrapperClass == null )
+            throw new NullPointerException( "Parameters can't be null." );
+        if( pageSize <= 0 || maxPages <= 0 )
+            throw new IllegalArgumentException( "Page size and count of pages must be positive." );
+        this.query = query;
+        this.wrapper = wrapper;
+        this.wrapperClass = wrapperClass;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<Integer, List<T>>( maxPages + 1, 0.75f, true ) {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Integer, List<T>> eldest ) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return count of pages that are currently in memory.
+     */
+    public int getLoadedPagesCount() {
+        return pages.size() + pinned.size();
+    }
+
+    /**
+     * Keep page of the row in memory until {@code unpinAll}, it's called for rows that are changed in place.
+     * @param index position of the row.
+     */
+    public void pin( int index ) {
+        get( index );
+        int page = index / pageSize;
+        if( !pinned.containsKey( page ) ) pinned.put( page, pages.remove( page ) );
+    }
+
+    /**
+     * Let pinned pages be evicted, it's called after changes were committed or cancelled.
+     */
+    public void unpinAll() {
+        pages.putAll( pinned );
+        pinned.clear();
+    }
+
+    protected String getCountText( String selectText ) {
+        return "SELECT COUNT(*) FROM ( " + selectText + " )";
+    }
+
+    /**
+     * @param selectText text of the query.
+     * @return text of the query that has two additional parameters:
+     * first and last row numbers (starting with 1, inclusive).
+     */
+    protected String getPageText( String selectText ) {
+        return "SELECT * FROM ( " + selectText + " ) ROWS ? TO ?";
+    }
+
+    private int setParameters( PreparedStatement ps ) throws SQLException {
+        int idx = 1;
+        Object[] params = query.getParameters();
+        if( params != null )
+            for( Object param : params ) {
+                ps.setObject( idx++, param );
+            }
+        return idx;
+    }
+
+    private int count() {
+        Connection con = null;
+        StatementCache cache = null;
+        PreparedStatement ps = null;
+        try {
+            con = ConnectionProvider.acquire( query );
+            cache = StatementCache.forConnection( con );
+            ps = cache.prepare( getCountText( query.getSelectText() ) );
+            ps.setQueryTimeout( query.getQueryTimeout() );
+            setParameters( ps );
+            try( ResultSet rs = ps.executeQuery() ) {
+                return rs.next() ? rs.getInt( 1 ) : 0;
+            }
+        } catch( SQLException ex ) {
+            throw new RuntimeException( ex );
+        } finally {
+            if( cache != null ) cache.release( ps );
+            ConnectionProvider.release( query, con );
+        }
+    }
+
+    private List<T> loadPage( int page ) {
+        List<T> rows = new ArrayList<>( pageSize );
+        Connection con = null;
+        StatementCache cache = null;
+        PreparedStatement ps = null;
+        try {
+            con = ConnectionProvider.acquire( query );
+            cache = StatementCache.forConnection( con );
+            ps = cache.prepare( getPageText( query.getSelectText() ) );
+            //the whole page is read by one round trip
+            ps.setFetchSize( pageSize );
+            ps.setQueryTimeout( query.getQueryTimeout() );
+            int idx = setParameters( ps );
+            ps.setInt( idx++, page * pageSize + 1 );
+            ps.setInt( idx, ( page + 1 ) * pageSize );
+            try( ResultSet rs = ps.executeQuery() ) {
+                while( rs.next() ) {
+                    rows.add( ( T ) wrapper.wrap( rs, wrapperClass ) );
+                }
+            }
+        } catch( SQLException ex ) {
+            throw new RuntimeException( ex );
+        } finally {
+            if( cache != null ) cache.release( ps );
+            ConnectionProvider.release( query, con );
+        }
+        return rows;
+    }
+
+    @Override
+    public T get( int index ) {
+        if( index < 0 || index >= size() )
+            throw new IndexOutOfBoundsException( "Index: " + index + ", size: " + size() );
+        int page = index / pageSize;
+        List<T> rows = pinned.get( page );
+        if( rows == null ) rows = pages.get( page );
+        if( rows == null ) {
+            rows = loadPage( page );
+            pages.put( page, rows );
+        }
+        int offset = index - page * pageSize;
+        //rows could be deleted after counting
+        return offset < rows.size() ? rows.get( offset ) : null;
+    }
+
+    @Override
+    public int size() {
+        if( size < 0 ) {
+            size = count();
+        }
+        return size;
+    }
+
+    /**
+     * Notify observers that properties of the row were changed in place,
+     * e.g. by {@code BasicDAO.setPropertyValue}.
+     * @param index position of the row.
+     */
+    public void notifyUpdated( int index ) {
+        if( index < 0 || index >= size() )
+            throw new IndexOutOfBoundsException( "Index: " + index + ", size: " + size() );
+        beginChange();
+        try {
+            nextUpdate( index );
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Drop loaded pages and count rows again, pinned pages are dropped as well.
+     * Listeners receive removing of all old rows and adding of new ones,
+     * removed rows are not materialized (reported as {@code null}).
+     */
+    public void refresh() {
+        final int oldSize = size < 0 ? 0 : size;
+        pages.clear();
+        pinned.clear();
+        size = -1;
+        int newSize = size();
+        beginChange();
+        try {
+            if( oldSize > 0 ) {
+                nextRemove( 0, new AbstractList<T>() {
+                    @Override
+                    public T get( int index ) {
+                        return null;
+                    }
+                    @Override
+                    public int size() {
+                        return oldSize;
+                    }
+                } );
+            }
+            if( newSize > 0 ) {
+                nextAdd( 0, newSize );
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+}
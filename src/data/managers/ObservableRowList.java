@@ -0,0 +1,174 @@
+package data.managers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import javafx.collections.ModifiableObservableListBase;
+
+/**
+ * Observable list of rows that are cached by {@code BasicDAO}.
+ * Unlike {@code FXCollections.observableList} it can notify observers that
+ * properties of rows were changed in place by update change ({@code wasUpdated}),
+ * like list with extractor does, but without observables per row.
+ * Bulk operations are done on the backing list at once and produce one change.
+ *
+ * @author Belkin Sergei
+ * @param <T> type of rows.
+ */
+public class ObservableRowList<T> extends ModifiableObservableListBase<T> {
+
+    private final List<T> rows;
+
+    public ObservableRowList() {
+        this( new ArrayList<>() );
+    }
+
+    /**
+     * @param rows backing list, it's not copied.
+     */
+    public ObservableRowList( List<T> rows ) {
+        if( rows == null ) throw new NullPointerException( "List must be set." );
+        this.rows = rows;
+    }
+
+    @Override
+    public T get( int index ) {
+        return rows.get( index );
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+
+    @Override
+    protected void doAdd( int index, T element ) {
+        rows.add( index, element );
+    }
+
+    @Override
+    protected T doSet( int index, T element ) {
+        return rows.set( index, element );
+    }
+
+    @Override
+    protected T doRemove( int index ) {
+        return rows.remove( index );
+    }
+
+    @Override
+    public boolean addAll( int index, Collection<? extends T> c ) {
+        if( index < 0 || index > size() )
+            throw new IndexOutOfBoundsException( "Index: " + index + ", size: " + size() );
+        if( c.isEmpty() ) return false;
+        beginChange();
+        try {
+            rows.addAll( index, c );
+            nextAdd( index, index + c.size() );
+            modCount++;
+        } finally {
+            endChange();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean addAll( Collection<? extends T> c ) {
+        return addAll( size(), c );
+    }
+
+    @Override
+    protected void removeRange( int fromIndex, int toIndex ) {
+        if( fromIndex < 0 || toIndex > size() || fromIndex > toIndex )
+            throw new IndexOutOfBoundsException( "Range: " + fromIndex + ".." + toIndex + ", size: " + size() );
+        if( fromIndex == toIndex ) return;
+        beginChange();
+        try {
+            List<T> range = rows.subList( fromIndex, toIndex );
+            List<T> removed = new ArrayList<>( range );
+            range.clear();
+            nextRemove( fromIndex, removed );
+            modCount++;
+        } finally {
+            endChange();
+        }
+    }
+
+    @Override
+    public boolean setAll( Collection<? extends T> col ) {
+        beginChange();
+        try {
+            List<T> removed = new ArrayList<>( rows );
+            rows.clear();
+            rows.addAll( col );
+            if( removed.isEmpty() ) {
+                if( !rows.isEmpty() ) nextAdd( 0, rows.size() );
+            } else {
+                nextReplace( 0, rows.size(), removed );
+            }
+            modCount++;
+        } finally {
+            endChange();
+        }
+        return true;
+    }
+
+    /**
+     * Reorder rows, observers get one permutation change.
+     * @param order current positions of rows in their new order.
+     */
+    public void permute( int[] order ) {
+        int size = size();
+        if( order.length != size )
+            throw new IllegalArgumentException( "Order has " + order.length + " positions, size: " + size );
+        int[] perm = new int[size];
+        Arrays.fill( perm, -1 );
+        boolean moved = false;
+        for( int i = 0; i < size; i++ ) {
+            int from = order[i];
+            if( from < 0 || from >= size || perm[from] >= 0 )
+                throw new IllegalArgumentException( "Order is not a permutation." );
+            perm[from] = i;
+            moved |= from != i;
+        }
+        if( !moved ) return;
+        beginChange();
+        try {
+            List<T> old = new ArrayList<>( rows );
+            for( int i = 0; i < size; i++ )
+                rows.set( i, old.get( order[i] ) );
+            nextPermutation( 0, size, perm );
+            modCount++;
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Notify observers that properties of the row were changed in place.
+     * @param index position of the row.
+     */
+    public void notifyUpdated( int index ) {
+        notifyUpdated( index, index + 1 );
+    }
+
+    /**
+     * Notify observers that properties of the rows were changed in place.
+     * @param from position of the first row.
+     * @param to position after the last row.
+     */
+    public void notifyUpdated( int from, int to ) {
+        if( from < 0 || to > size() || from > to )
+            throw new IndexOutOfBoundsException( "Range: " + from + ".." + to + ", size: " + size() );
+        if( from == to ) return;
+        beginChange();
+        try {
+            for( int i = from; i < to; i++ )
+                nextUpdate( i );
+        } finally {
+            endChange();
+        }
+    }
+
+}
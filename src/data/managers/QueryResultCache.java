@@ -0,0 +1,236 @@
+package data.managers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared cache of query results.
+ * Result is keyed by database, class of rows, select text and parameters, it's evicted
+ * when time to live expires or when the cache exceeds max size (the least recently used first).
+ * Every result is bound to the tables it was read from, {@code invalidate} removes
+ * all results of the table, {@code BasicDAO} calls it after commit.
+ * Rows are shared by all users of the result, so they must not be changed in place
+ * without invalidation, {@code BasicDAO} takes copies of them unless it's in copy-on-write mode.
+ *
+ * @author Belkin Sergei
+ */
+public class QueryResultCache {
+
+    public static final int DEFAULT_MAX_SIZE = 100;
+    public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis( 5 );
+
+    private static final QueryResultCache SHARED = new QueryResultCache();
+
+    private int maxSize = DEFAULT_MAX_SIZE;
+    private long timeToLive = DEFAULT_TIME_TO_LIVE;
+    private final LinkedHashMap<Key, Entry> results = new LinkedHashMap<>( 16, 0.75f, true );
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Key of a result.
+     */
+    public static final class Key {
+
+        private final Object database;
+        private final Class<?> rowClass;
+        private final String selectText;
+        private final Object[] params;
+        private final int hash;
+
+        /**
+         * @param database identity of the database the query runs against, 
+         * e.g. physical connection or connection provider, it's compared by identity.
+         * @param rowClass class of rows.
+         * @param selectText text of the query.
+         * @param params parameters of the query, the array is copied.
+         */
+        public Key( Object database, Class<?> rowClass, String selectText, Object[] params ) {
+            this.database = database;
+            this.rowClass = rowClass;
+            this.selectText = selectText;
+            this.params = params == null ? new Object[0] : params.clone();
+            this.hash = Objects.hash( System.identityHashCode( database ), rowClass, selectText, 
+                    Arrays.deepHashCode( this.params ) );
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if( !( obj instanceof Key ) ) return false;
+            Key other = ( Key ) obj;
+            return hash == other.hash && database == other.database && rowClass == other.rowClass
+                    && Objects.equals( selectText, other.selectText )
+                    && Arrays.deepEquals( params, other.params );
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return selectText + " " + Arrays.deepToString( params );
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final List<?> rows;
+        private final Set<String> tables;
+        private final long created = System.nanoTime();
+
+        Entry( List<?> rows, Set<String> tables ) {
+            this.rows = rows;
+            this.tables = tables;
+        }
+
+    }
+
+    /**
+     * @return cache that is shared by the application.
+     */
+    public static QueryResultCache getShared() {
+        return SHARED;
+    }
+
+    private static String normalize( String table ) {
+        return table.trim().toUpperCase( Locale.ROOT );
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param maxSize max count of cached results.
+     */
+    public synchronized void setMaxSize( int maxSize ) {
+        if( maxSize < 0 ) throw new IllegalArgumentException( "Size can't be negative." );
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    public synchronized long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * @param timeToLive time in milliseconds, {@code 0} means results don't expire.
+     */
+    public synchronized void setTimeToLive( long timeToLive ) {
+        if( timeToLive < 0 ) throw new IllegalArgumentException( "Time to live can't be negative." );
+        this.timeToLive = timeToLive;
+    }
+
+    private boolean isExpired( Entry entry, long now ) {
+        return timeToLive > 0 && now - entry.created >= TimeUnit.MILLISECONDS.toNanos( timeToLive );
+    }
+
+    /**
+     * @param key key of the result.
+     * @return read only rows or {@code null} if there is no actual result.
+     */
+    public synchronized List<?> get( Key key ) {
+        Entry entry = results.get( key );
+        if( entry != null && isExpired( entry, System.nanoTime() ) ) {
+            results.remove( key );
+            evictions++;
+            entry = null;
+        }
+        if( entry == null ) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.rows;
+    }
+
+    /**
+     * @param key key of the result.
+     * @param rows rows of the result, the list is copied.
+     * @param tables tables the result was read from.
+     */
+    public synchronized void put( Key key, List<?> rows, String... tables ) {
+        if( maxSize == 0 ) return;
+        Set<String> names = new HashSet<>();
+        for( String table : tables ) {
+            if( table != null && !table.trim().isEmpty() ) names.add( normalize( table ) );
+        }
+        results.put( key, new Entry( Collections.unmodifiableList( new ArrayList<>( rows ) ), names ) );
+        evict();
+    }
+
+    /**
+     * Remove the result.
+     * @param key key of the result.
+     */
+    public synchronized void remove( Key key ) {
+        results.remove( key );
+    }
+
+    /**
+     * Remove all results that were read from the table.
+     * @param table name of the table, case insensitive.
+     * @return count of removed results.
+     */
+    public synchronized int invalidate( String table ) {
+        if( table == null || table.trim().isEmpty() ) return 0;
+        String name = normalize( table );
+        int res = 0;
+        for( Iterator<Entry> it = results.values().iterator(); it.hasNext(); ) {
+            if( it.next().tables.contains( name ) ) {
+                it.remove();
+                res++;
+            }
+        }
+        return res;
+    }
+
+    public synchronized void clear() {
+        results.clear();
+    }
+
+    public synchronized int size() {
+        return results.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return count of results removed because of time to live or max size.
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    private void evict() {
+        long now = System.nanoTime();
+        for( Iterator<Map.Entry<Key, Entry>> it = results.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Key, Entry> e = it.next();
+            if( results.size() > maxSize || isExpired( e.getValue(), now ) ) {
+                it.remove();
+                evictions++;
+            }
+        }
+    }
+
+}
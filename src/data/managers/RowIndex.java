@@ -0,0 +1,366 @@
+package data.managers;
+
+import data.wrappers.IDBPropertyReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.WeakListChangeListener;
+
+/**
+ * Base class of in-memory indexes of rows by values of properties.
+ * Index is kept current by list changes passed to {@code onChanged}: added, removed,
+ * replaced rows and update changes ({@code wasUpdated}) of rows that were changed in place.
+ * Rows changed in place without update change must be passed to {@code reindex}.
+ * Index either listens list itself ({@code attach}) or receives changes from
+ * the owner of the list, like {@code BasicDAO} does.
+ * Every row is indexed once regardless of count of its occurences in the list.
+ * Owner of the index can record delta of the index structure between {@code beginDelta}
+ * and {@code endDelta} to update dependent views without looking up all rows again.
+ *
+ * @author Belkin Sergei
+ * @param <T> type of rows.
+ */
+public abstract class RowIndex<T> {
+
+    private final IDBPropertyReference[] properties;
+    /**
+     * Key and count of occurences of every indexed row.
+     */
+    private final Map<T, Entry> entries = new IdentityHashMap<>();
+    private List<T> list;
+
+    private final ListChangeListener<T> onListChanged = this::onChanged;
+    private final WeakListChangeListener<T> weakListener = new WeakListChangeListener<>( onListChanged );
+    private ObservableList<T> attached;
+
+    /**
+     * Marker of rows that were not indexed before the delta.
+     */
+    static final Object NOT_INDEXED = new Object();
+    /**
+     * Keys that touched rows had before the delta, {@code null} if delta is not recorded.
+     */
+    private Map<T, Object> touched;
+    /**
+     * Rows in order of putting to the index structure during the delta.
+     */
+    private List<T> putRows;
+
+    private static final class Entry {
+
+        private Object key;
+        private int count = 1;
+
+        Entry( Object key ) {
+            this.key = key;
+        }
+
+    }
+
+    /**
+     * Rows with the same key, type differs from row type to tell it from single row.
+     */
+    private static final class Bucket extends ArrayList<Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        boolean removeRow( Object row ) {
+            for( int i = 0; i < size(); i++ ) {
+                if( get( i ) == row ) {
+                    remove( i );
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
+    /**
+     * @param properties properties that compose the key.
+     */
+    protected RowIndex( IDBPropertyReference... properties ) {
+        if( properties == null || properties.length == 0 )
+            throw new IllegalArgumentException( "Properties of the index must be set." );
+        this.properties = properties.clone();
+    }
+
+    public List<IDBPropertyReference> getProperties() {
+        return Collections.unmodifiableList( Arrays.asList( properties ) );
+    }
+
+    /**
+     * @param values values of the properties in their order.
+     * @return key of the index.
+     */
+    public Object toKey( Object... values ) {
+        if( values.length != properties.length )
+            throw new IllegalArgumentException( "Index has " + properties.length + " properties." );
+        return values.length == 1 ? values[0] : Arrays.asList( values.clone() );
+    }
+
+    /**
+     * @param row row.
+     * @return key of the row.
+     */
+    public Object keyOf( T row ) {
+        if( properties.length == 1 ) return properties[0].get( row );
+        Object[] values = new Object[properties.length];
+        for( int i = 0; i < values.length; i++ )
+            values[i] = properties[i].get( row );
+        return Arrays.asList( values );
+    }
+
+    /**
+     * Index rows of the list and listen its changes, previously attached list is released.
+     * @param list list to index, {@code null} releases previous list.
+     */
+    public void attach( ObservableList<T> list ) {
+        if( attached != null ) attached.removeListener( weakListener );
+        attached = list;
+        reset( list );
+        if( list != null ) list.addListener( weakListener );
+    }
+
+    /**
+     * Index all rows of the list from scratch, changes of the list must be passed to {@code onChanged}.
+     * @param list indexed list, {@code null} means empty one.
+     */
+    public void reset( List<T> list ) {
+        this.list = list;
+        entries.clear();
+        clear();
+        if( list != null )
+            for( T row : list )
+                add( row );
+    }
+
+    /**
+     * @return indexed list or {@code null}.
+     */
+    public List<T> getList() {
+        return list;
+    }
+
+    /**
+     * @return count of indexed rows.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param row row.
+     * @return true if the row is in the index.
+     */
+    public boolean isIndexed( T row ) {
+        return entries.containsKey( row );
+    }
+
+    /**
+     * Apply changes of indexed list.
+     * @param c change, it's iterated from the beginning.
+     */
+    public void onChanged( ListChangeListener.Change<? extends T> c ) {
+        c.reset();
+        while( c.next() ) {
+            if( c.wasPermutated() ) {
+                //the same rows
+            } else if( c.wasUpdated() ) {
+                for( int i = c.getFrom(); i < c.getTo(); i++ )
+                    reindex( c.getList().get( i ) );
+            } else {
+                for( T row : c.getRemoved() )
+                    remove( row );
+                for( T row : c.getAddedSubList() )
+                    add( row );
+            }
+            changed( c );
+        }
+        c.reset();
+    }
+
+    /**
+     * It's called for every part of list change after the index was updated.
+     * @param c current part of the change.
+     */
+    protected void changed( ListChangeListener.Change<? extends T> c ) {
+    }
+
+    private void add( T row ) {
+        if( row == null ) return;
+        Entry entry = entries.get( row );
+        if( entry != null ) {
+            entry.count++;
+        } else {
+            Object key = keyOf( row );
+            entries.put( row, new Entry( key ) );
+            putTouched( key, row, NOT_INDEXED );
+        }
+    }
+
+    private void remove( T row ) {
+        if( row == null ) return;
+        Entry entry = entries.get( row );
+        if( entry != null && --entry.count == 0 ) {
+            entries.remove( row );
+            deleteTouched( entry.key, row );
+        }
+    }
+
+    private void putTouched( Object key, T row, Object oldKey ) {
+        if( touched != null ) {
+            if( !touched.containsKey( row ) ) touched.put( row, oldKey );
+            putRows.add( row );
+        }
+        put( key, row );
+    }
+
+    private void deleteTouched( Object key, T row ) {
+        if( touched != null && !touched.containsKey( row ) ) touched.put( row, key );
+        delete( key, row );
+    }
+
+    /**
+     * Start recording of rows that are put to or deleted from the index structure.
+     */
+    void beginDelta() {
+        touched = new IdentityHashMap<>();
+        putRows = new ArrayList<>();
+    }
+
+    /**
+     * Stop recording of the delta.
+     */
+    void endDelta() {
+        touched = null;
+        putRows = null;
+    }
+
+    /**
+     * @return keys that rows touched during the delta had before it, 
+     * {@code NOT_INDEXED} for rows that were not indexed.
+     */
+    Map<T, Object> getTouched() {
+        return touched == null ? Collections.emptyMap() : touched;
+    }
+
+    /**
+     * @return rows in order of putting to the index structure during the delta, 
+     * a row can occur several times.
+     */
+    List<T> getPutRows() {
+        return putRows == null ? Collections.emptyList() : putRows;
+    }
+
+    /**
+     * @param row row.
+     * @return count of occurences of the row in the list.
+     */
+    int getCount( T row ) {
+        Entry entry = entries.get( row );
+        return entry == null ? 0 : entry.count;
+    }
+
+    /**
+     * @param row row.
+     * @return key of the indexed row or {@code null} if it's not indexed.
+     */
+    Object getKey( T row ) {
+        Entry entry = entries.get( row );
+        return entry == null ? null : entry.key;
+    }
+
+    /**
+     * Update key of the row that was changed in place without update change.
+     * @param row row.
+     * @return true if key of the row was changed.
+     */
+    public boolean reindex( T row ) {
+        Entry entry = entries.get( row );
+        if( entry == null ) return false;
+        Object key = keyOf( row );
+        if( Objects.equals( key, entry.key ) ) return false;
+        Object oldKey = entry.key;
+        deleteTouched( oldKey, row );
+        entry.key = key;
+        putTouched( key, row, oldKey );
+        return true;
+    }
+
+    /**
+     * Add the row to the index structure.
+     */
+    protected abstract void put( Object key, T row );
+
+    /**
+     * Remove the row from the index structure.
+     */
+    protected abstract void delete( Object key, T row );
+
+    /**
+     * Empty the index structure.
+     */
+    protected abstract void clear();
+
+    /**
+     * Add the row to the map of rows by key, value is a row or bucket of rows.
+     */
+    protected static void putRow( Map<Object, Object> map, Object key, Object row ) {
+        Object bucket = map.get( key );
+        if( bucket == null && !map.containsKey( key ) ) {
+            map.put( key, row );
+        } else if( bucket instanceof Bucket ) {
+            ( ( Bucket ) bucket ).add( row );
+        } else {
+            Bucket res = new Bucket();
+            res.add( bucket );
+            res.add( row );
+            map.put( key, res );
+        }
+    }
+
+    /**
+     * Remove the row from the map of rows by key.
+     */
+    protected static void deleteRow( Map<Object, Object> map, Object key, Object row ) {
+        Object bucket = map.get( key );
+        if( bucket == row ) {
+            map.remove( key );
+        } else if( bucket instanceof Bucket ) {
+            Bucket rows = ( Bucket ) bucket;
+            rows.removeRow( row );
+            if( rows.size() == 1 ) {
+                map.put( key, rows.get( 0 ) );
+            } else if( rows.isEmpty() ) {
+                map.remove( key );
+            }
+        }
+    }
+
+    /**
+     * Add rows of the value of map of rows by key to the list.
+     */
+    protected static <T> void collectRows( Object bucket, List<T> res ) {
+        if( bucket instanceof Bucket ) {
+            for( Object row : ( Bucket ) bucket )
+                res.add( ( T ) row );
+        } else if( bucket != null ) {
+            res.add( ( T ) bucket );
+        }
+    }
+
+    /**
+     * @return true if value of map of rows by key contains several rows.
+     */
+    protected static boolean isBucket( Object bucket ) {
+        return bucket instanceof Bucket;
+    }
+
+}
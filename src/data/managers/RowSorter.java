@@ -0,0 +1,552 @@
+package data.managers;
+
+import data.DataExecutors;
+import data.wrappers.IDBPropertyReference;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+/**
+ * Parallel sorting and filtering of cached data of {@code BasicDAO}.
+ * Values of key properties are read once per row and are encoded into arrays of longs
+ * (integral numbers and dates as is, local dates as epoch days, local date-times as
+ * epoch nanoseconds, floating numbers by their order, decimal numbers and other comparable
+ * values by their rank), then rows are sorted by stable parallel merge sort or
+ * filtered in the fork-join pool off the FX application thread.
+ * Sorted order is applied on the FX application thread as one permutation change.
+ * Result is discarded if cached data was changed or replaced meanwhile, as well as
+ * result of a request that was superseded by a later one.
+ * Rows must not be changed in place while a request is in progress.
+ *
+ * @author Belkin Sergei
+ * @param <T> type of rows.
+ */
+public class RowSorter<T> {
+
+    /**
+     * Ranges of this size and less are sorted by one thread.
+     */
+    public static final int SEQUENTIAL_THRESHOLD = 8192;
+
+    private final BasicDAO<T> dao;
+    private Executor executor = DataExecutors.getDefaultExecutor();
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    /**
+     * Every request gets its own generation, results of outdated generations are discarded.
+     */
+    private final AtomicLong sortGeneration = new AtomicLong();
+    private final AtomicLong filterGeneration = new AtomicLong();
+
+    /**
+     * Key of sorting.
+     */
+    public static final class SortKey {
+
+        private final String name;
+        private final boolean ascending;
+
+        /**
+         * @param name name of property of the wrapper.
+         * @param ascending true for ascending order, nulls go first in it.
+         */
+        public SortKey( String name, boolean ascending ) {
+            if( name == null ) throw new NullPointerException( "Name must be set." );
+            this.name = name;
+            this.ascending = ascending;
+        }
+
+        public static SortKey ascending( String name ) {
+            return new SortKey( name, true );
+        }
+
+        public static SortKey descending( String name ) {
+            return new SortKey( name, false );
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isAscending() {
+            return ascending;
+        }
+
+    }
+
+    public RowSorter( BasicDAO<T> dao ) {
+        if( dao == null ) throw new NullPointerException( "DAO must be set." );
+        this.dao = dao;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @param executor executor that starts extraction of keys and sorting.
+     */
+    public void setExecutor( Executor executor ) {
+        if( executor == null ) throw new NullPointerException( "Executor must be set." );
+        this.executor = executor;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * @param pool pool of parallel sorting and filtering.
+     */
+    public void setPool( ForkJoinPool pool ) {
+        if( pool == null ) throw new NullPointerException( "Pool must be set." );
+        this.pool = pool;
+    }
+
+    /**
+     * Sort cached data by the keys.
+     * It must be called on the FX application thread.
+     * @param keys keys in order of their priority.
+     * @return applied order, i.e. former positions of rows in their new order;
+     * future fails with {@code CancellationException} if the result was superseded and
+     * with {@code ConcurrentModificationException} if cached data was changed.
+     */
+    public CompletableFuture<int[]> sort( SortKey... keys ) {
+        if( keys.length == 0 ) throw new IllegalArgumentException( "Keys must be set." );
+        IDBPropertyReference[] refs = new IDBPropertyReference[keys.length];
+        boolean[] ascending = new boolean[keys.length];
+        for( int i = 0; i < keys.length; i++ ) {
+            refs[i] = getProperty( keys[i].getName() );
+            ascending[i] = keys[i].isAscending();
+        }
+        ObservableList<T> list = dao.getData();
+        if( !( list instanceof ObservableRowList ) )
+            throw new UnsupportedOperationException( "Cached data can't be reordered." );
+        return submit( list, ( rows ) -> {
+            Column[] columns = new Column[refs.length];
+            for( int i = 0; i < refs.length; i++ )
+                columns[i] = extract( rows, refs[i] );
+            int[] order = new int[rows.length];
+            for( int i = 0; i < order.length; i++ ) order[i] = i;
+            pool.invoke( new SortTask( order, new int[order.length], 0, order.length,
+                    new RowComparator( columns, ascending ) ) );
+            return order;
+        }, ( order ) -> ( ( ObservableRowList<T> ) list ).permute( order ), sortGeneration );
+    }
+
+    /**
+     * Find rows of cached data with values of the property in the range.
+     * It must be called on the FX application thread.
+     * Rows with {@code null} value never match.
+     * @param name name of property of the wrapper.
+     * @param from low bound, {@code null} means no bound.
+     * @param fromInclusive true if the low bound is included.
+     * @param to high bound, {@code null} means no bound.
+     * @param toInclusive true if the high bound is included.
+     * @return rows in order of cached data, they are delivered on the FX application thread;
+     * future fails like future of {@code sort}.
+     */
+    public CompletableFuture<List<T>> filter( String name, Object from, boolean fromInclusive,
+            Object to, boolean toInclusive ) {
+        IDBPropertyReference ref = getProperty( name );
+        ObservableList<T> list = dao.getData();
+        //snapshot would load all pages
+        if( list instanceof LazyObservableList )
+            throw new UnsupportedOperationException( "Lazy data can't be filtered." );
+        return submit( list, ( rows ) -> {
+            Column column = extract( rows, ref );
+            long low = from == null ? Long.MIN_VALUE : column.lowBound( from, fromInclusive );
+            long high = to == null ? Long.MAX_VALUE : column.highBound( to, toInclusive );
+            int[] found = pool.submit( () -> IntStream.range( 0, rows.length ).parallel()
+                    .filter( ( i ) -> !column.isNull( i ) && column.keys[i] >= low && column.keys[i] <= high )
+                    .toArray() ).join();
+            List<T> res = new ArrayList<>( found.length );
+            for( int i : found ) res.add( ( T ) rows[i] );
+            return Collections.unmodifiableList( res );
+        }, ( rows ) -> { }, filterGeneration );
+    }
+
+    private IDBPropertyReference getProperty( String name ) {
+        if( dao.getWrapper() == null )
+            throw new IllegalStateException( "Wrapper must be set before sorting." );
+        IDBPropertyReference res = dao.getWrapper().getPropertyByName( name );
+        if( res == null ) throw new IllegalArgumentException( "There is no property " + name );
+        return res;
+    }
+
+    /**
+     * Compute result from snapshot of rows off the FX application thread and
+     * apply it on the FX application thread if cached data wasn't changed
+     * and the request is of the last generation.
+     */
+    private <R> CompletableFuture<R> submit( ObservableList<T> list, Function<Object[], R> task,
+            Consumer<R> apply, AtomicLong generation ) {
+        long gen = generation.incrementAndGet();
+        Object[] rows = list.toArray();
+        boolean[] changed = { false };
+        ListChangeListener<T> onChanged = ( c ) -> changed[0] = true;
+        list.addListener( onChanged );
+        CompletableFuture<R> result = new CompletableFuture<>();
+        CompletableFuture.supplyAsync( () -> task.apply( rows ), executor ).whenComplete( ( res, ex ) -> {
+            DataExecutors.FX.execute( () -> {
+                list.removeListener( onChanged );
+                if( ex != null ) {
+                    result.completeExceptionally( ex );
+                } else if( gen != generation.get() ) {
+                    result.completeExceptionally( new CancellationException( "Request was superseded." ) );
+                } else if( changed[0] || list != dao.getData() ) {
+                    result.completeExceptionally( new ConcurrentModificationException( "Cached data was changed." ) );
+                } else {
+                    try {
+                        apply.accept( res );
+                        result.complete( res );
+                    } catch( RuntimeException e ) {
+                        result.completeExceptionally( e );
+                    }
+                }
+            } );
+        } );
+        return result;
+    }
+
+    /**
+     * Read values of the property and encode them, values are read in parallel.
+     */
+    private Column extract( Object[] rows, IDBPropertyReference ref ) {
+        Object[] values = new Object[rows.length];
+        pool.submit( () -> IntStream.range( 0, rows.length ).parallel()
+                .forEach( ( i ) -> values[i] = rows[i] == null ? null : ref.get( rows[i] ) ) ).join();
+        return Column.of( values );
+    }
+
+    /**
+     * Encoded values of a property, encoding keeps order of values.
+     * Column of {@code BigDecimal} or {@code BigInteger} values is ranked exactly,
+     * other numbers of such column are converted to {@code BigDecimal}, 
+     * so it can't contain NaN or infinity.
+     */
+    private static final class Column {
+
+        //numeric types are ordered by their precision
+        private static final int INTEGRAL = 0;
+        private static final int FLOATING = 1;
+        private static final int DECIMAL = 2;
+        private static final int DATE = 3;
+        private static final int DAY = 4;
+        private static final int DATETIME = 5;
+        private static final int RANK = 6;
+
+        private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+        private final long[] keys;
+        private final boolean[] nulls;
+        private final int type;
+        /**
+         * Sorted distinct values of DECIMAL and RANK column.
+         */
+        private final Object[] ranks;
+
+        private Column( long[] keys, boolean[] nulls, int type, Object[] ranks ) {
+            this.keys = keys;
+            this.nulls = nulls;
+            this.type = type;
+            this.ranks = ranks;
+        }
+
+        static Column of( Object[] values ) {
+            boolean hasNulls = false;
+            int type = -1;
+            for( Object value : values ) {
+                if( value == null ) {
+                    hasNulls = true;
+                } else {
+                    int t = typeOf( value );
+                    type = type < 0 || type == t ? t 
+                            : type <= DECIMAL && t <= DECIMAL ? Math.max( type, t ) : RANK;
+                }
+            }
+            if( type < 0 ) type = INTEGRAL;
+            if( type == DATETIME && !Arrays.stream( values ).allMatch( 
+                    ( v ) -> v == null || fitsNanos( ( LocalDateTime ) v ) ) ) type = RANK;
+            if( type == DECIMAL ) {
+                values = values.clone();
+                for( int i = 0; i < values.length; i++ )
+                    if( values[i] != null ) values[i] = toDecimal( ( Number ) values[i] );
+            }
+            long[] keys = new long[values.length];
+            boolean[] nulls = hasNulls ? new boolean[values.length] : null;
+            Object[] ranks = null;
+            if( type == DECIMAL || type == RANK ) ranks = distinct( values );
+            for( int i = 0; i < values.length; i++ ) {
+                Object value = values[i];
+                if( value == null ) {
+                    nulls[i] = true;
+                } else {
+                    keys[i] = encode( type, ranks, value );
+                }
+            }
+            return new Column( keys, nulls, type, ranks );
+        }
+
+        private static boolean isIntegral( Object value ) {
+            return value instanceof Long || value instanceof Integer
+                    || value instanceof Short || value instanceof Byte;
+        }
+
+        private static int typeOf( Object value ) {
+            if( isIntegral( value ) ) return INTEGRAL;
+            if( value instanceof BigDecimal || value instanceof BigInteger ) return DECIMAL;
+            if( value instanceof Number ) return FLOATING;
+            if( value instanceof Date ) return DATE;
+            if( value instanceof LocalDate ) return DAY;
+            if( value instanceof LocalDateTime ) return DATETIME;
+            return RANK;
+        }
+
+        private static BigDecimal toDecimal( Number value ) {
+            if( value instanceof BigDecimal ) return ( BigDecimal ) value;
+            if( value instanceof BigInteger ) return new BigDecimal( ( BigInteger ) value );
+            if( isIntegral( value ) ) return BigDecimal.valueOf( value.longValue() );
+            if( value instanceof Float ) return new BigDecimal( value.toString() );
+            //shortest decimal that identifies the double, it keeps order of doubles
+            return BigDecimal.valueOf( value.doubleValue() );
+        }
+
+        /**
+         * @return nanoseconds since epoch, it fails for years out of 1677 - 2262.
+         */
+        private static long toNanos( LocalDateTime value ) {
+            return Math.addExact( Math.multiplyExact( value.toEpochSecond( ZoneOffset.UTC ), NANOS_PER_SECOND ),
+                    value.getNano() );
+        }
+
+        private static boolean fitsNanos( LocalDateTime value ) {
+            try {
+                toNanos( value );
+                return true;
+            } catch( ArithmeticException ex ) {
+                return false;
+            }
+        }
+
+        private static Object[] distinct( Object[] values ) {
+            Object[] res = Arrays.stream( values ).filter( ( v ) -> v != null ).toArray();
+            Arrays.parallelSort( res, ( a, b ) -> ( ( Comparable<Object> ) a ).compareTo( b ) );
+            int size = 0;
+            for( int i = 0; i < res.length; i++ ) {
+                if( size == 0 || ( ( Comparable<Object> ) res[size - 1] ).compareTo( res[i] ) != 0 )
+                    res[size++] = res[i];
+            }
+            return Arrays.copyOf( res, size );
+        }
+
+        /**
+         * Order preserving encoding of double.
+         */
+        private static long encode( double value ) {
+            long bits = Double.doubleToLongBits( value );
+            return bits ^ ( ( bits >> 63 ) & Long.MAX_VALUE );
+        }
+
+        private static long encode( int type, Object[] ranks, Object value ) {
+            switch( type ) {
+                case INTEGRAL:
+                    return ( ( Number ) value ).longValue();
+                case FLOATING:
+                    return encode( ( ( Number ) value ).doubleValue() );
+                case DATE:
+                    return ( ( Date ) value ).getTime();
+                case DAY:
+                    return ( ( LocalDate ) value ).toEpochDay();
+                case DATETIME:
+                    return toNanos( ( LocalDateTime ) value );
+                default:
+                    return Arrays.binarySearch( ranks, value,
+                            ( a, b ) -> ( ( Comparable<Object> ) a ).compareTo( b ) );
+            }
+        }
+
+        /**
+         * @return position of the bound in ranks like {@code Arrays.binarySearch}.
+         */
+        private int searchRank( Object bound ) {
+            if( type == DECIMAL ) bound = toDecimal( ( Number ) bound );
+            return Arrays.binarySearch( ranks, bound,
+                    ( a, b ) -> ( ( Comparable<Object> ) a ).compareTo( b ) );
+        }
+
+        /**
+         * @return bound of DAY or DATETIME column, bound out of range of keys is saturated.
+         */
+        private long encodeTime( Object bound ) {
+            if( type == DAY ) return ( ( LocalDate ) bound ).toEpochDay();
+            LocalDateTime time = ( LocalDateTime ) bound;
+            if( fitsNanos( time ) ) return toNanos( time );
+            return time.getYear() < 1970 ? Long.MIN_VALUE + 1 : Long.MAX_VALUE - 1;
+        }
+
+        boolean isNull( int i ) {
+            return nulls != null && nulls[i];
+        }
+
+        /**
+         * @return the least key that is within the low bound.
+         */
+        long lowBound( Object bound, boolean inclusive ) {
+            switch( type ) {
+                case INTEGRAL:
+                    if( !isIntegral( bound ) ) {
+                        double d = ( ( Number ) bound ).doubleValue();
+                        return inclusive ? ( long ) Math.ceil( d ) : ( long ) Math.floor( d ) + 1;
+                    }
+                    return ( ( Number ) bound ).longValue() + ( inclusive ? 0 : 1 );
+                case FLOATING:
+                    return encode( ( ( Number ) bound ).doubleValue() ) + ( inclusive ? 0 : 1 );
+                case DATE:
+                    return ( ( Date ) bound ).getTime() + ( inclusive ? 0 : 1 );
+                case DAY:
+                case DATETIME:
+                    return encodeTime( bound ) + ( inclusive ? 0 : 1 );
+                default:
+                    int pos = searchRank( bound );
+                    return pos >= 0 ? pos + ( inclusive ? 0 : 1 ) : -pos - 1;
+            }
+        }
+
+        /**
+         * @return the greatest key that is within the high bound.
+         */
+        long highBound( Object bound, boolean inclusive ) {
+            switch( type ) {
+                case INTEGRAL:
+                    if( !isIntegral( bound ) ) {
+                        double d = ( ( Number ) bound ).doubleValue();
+                        return inclusive ? ( long ) Math.floor( d ) : ( long ) Math.ceil( d ) - 1;
+                    }
+                    return ( ( Number ) bound ).longValue() - ( inclusive ? 0 : 1 );
+                case FLOATING:
+                    return encode( ( ( Number ) bound ).doubleValue() ) - ( inclusive ? 0 : 1 );
+                case DATE:
+                    return ( ( Date ) bound ).getTime() - ( inclusive ? 0 : 1 );
+                case DAY:
+                case DATETIME:
+                    return encodeTime( bound ) - ( inclusive ? 0 : 1 );
+                default:
+                    int pos = searchRank( bound );
+                    return pos >= 0 ? pos - ( inclusive ? 0 : 1 ) : -pos - 2;
+            }
+        }
+
+    }
+
+    /**
+     * Compares positions of rows by encoded keys.
+     */
+    private static final class RowComparator {
+
+        private final Column[] columns;
+        private final boolean[] ascending;
+
+        RowComparator( Column[] columns, boolean[] ascending ) {
+            this.columns = columns;
+            this.ascending = ascending;
+        }
+
+        int compare( int a, int b ) {
+            for( int k = 0; k < columns.length; k++ ) {
+                Column column = columns[k];
+                boolean nullA = column.isNull( a ), nullB = column.isNull( b );
+                int res = nullA || nullB ? Boolean.compare( nullB, nullA )
+                        : Long.compare( column.keys[a], column.keys[b] );
+                if( res != 0 ) return ascending[k] ? res : -res;
+            }
+            return 0;
+        }
+
+    }
+
+    /**
+     * Stable merge sort of positions, halves are sorted in parallel.
+     */
+    private static final class SortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private static final int INSERTION_THRESHOLD = 32;
+
+        private final int[] order;
+        private final int[] buffer;
+        private final int from;
+        private final int to;
+        private final RowComparator comparator;
+
+        SortTask( int[] order, int[] buffer, int from, int to, RowComparator comparator ) {
+            this.order = order;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            if( to - from <= SEQUENTIAL_THRESHOLD ) {
+                sort( from, to );
+            } else {
+                int mid = ( from + to ) >>> 1;
+                invokeAll( new SortTask( order, buffer, from, mid, comparator ),
+                        new SortTask( order, buffer, mid, to, comparator ) );
+                merge( from, mid, to );
+            }
+        }
+
+        private void sort( int from, int to ) {
+            if( to - from <= INSERTION_THRESHOLD ) {
+                for( int i = from + 1; i < to; i++ ) {
+                    int row = order[i];
+                    int j = i;
+                    for( ; j > from && comparator.compare( order[j - 1], row ) > 0; j-- )
+                        order[j] = order[j - 1];
+                    order[j] = row;
+                }
+            } else {
+                int mid = ( from + to ) >>> 1;
+                sort( from, mid );
+                sort( mid, to );
+                merge( from, mid, to );
+            }
+        }
+
+        private void merge( int from, int mid, int to ) {
+            //halves are already in order
+            if( comparator.compare( order[mid - 1], order[mid] ) <= 0 ) return;
+            System.arraycopy( order, from, buffer, from, to - from );
+            int i = from, j = mid, k = from;
+            while( i < mid && j < to )
+                order[k++] = comparator.compare( buffer[j], buffer[i] ) < 0 ? buffer[j++] : buffer[i++];
+            while( i < mid )
+                order[k++] = buffer[i++];
+            while( j < to )
+                order[k++] = buffer[j++];
+        }
+
+    }
+
+}
@@ -0,0 +1,268 @@
+package data.managers;
+
+import data.StatementCache;
+import data.entities.EntityMetadata;
+import data.wrappers.DefaultWrapper;
+import data.wrappers.IDBPropertyReference;
+import data.wrappers.Wrapper;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Writes changes tracked by {@code BasicDAO} to DB.
+ * INSERT, UPDATE and DELETE statements are generated from persistable
+ * properties of the wrapper and table name of the entity. Rows that produce
+ * the same statement text are sent by one JDBC batch, all statements are
+ * executed in one transaction. Statements are taken from {@code StatementCache}
+ * of the connection.
+ * UPDATE statements contain only changed fields, they are taken from dirty fields
+ * of {@code BasicDAO.Pair} and from comparison of initial and last values.
+ *
+ * @author Belkin Sergei
+ * @param <T> type of rows.
+ */
+public class SQLCommitter<T> {
+
+    private final Wrapper wrapper;
+    private final Class<?> wrapperClass;
+    private final String[] keyFields;
+    /**
+     * Statement text and parameters of its rows, in order of execution.
+     */
+    private final Map<String, List<Object[]>> batches = new LinkedHashMap<>();
+
+    /**
+     * @param wrapper wrapper that provides persistable properties.
+     * @param wrapperClass class of rows.
+     * @param keyFields names of DB fields that identify a row,
+     * if {@code null} or empty all persistable fields are used.
+     */
+    public SQLCommitter( Wrapper wrapper, Class<?> wrapperClass, String[] keyFields ) {
+        if( wrapper == null || wrapperClass == null )
+            throw new NullPointerException( "Wrapper and its class must be set." );
+        this.wrapper = wrapper;
+        this.wrapperClass = wrapperClass;
+        this.keyFields = keyFields;
+    }
+
+    private List<IDBPropertyReference> getPersistableProperties() {
+        if( wrapper.getProperties().isEmpty() && wrapper instanceof DefaultWrapper )
+            ( ( DefaultWrapper ) wrapper ).initProperties( wrapperClass );
+        List<IDBPropertyReference> res = new ArrayList<>();
+        for( Object o : wrapper.getProperties() ) {
+            IDBPropertyReference ref = ( IDBPropertyReference ) o;
+            if( ref.isPersistable() && ref.isReadable() )
+                res.add( ref );
+        }
+        return res;
+    }
+
+    private List<IDBPropertyReference> getKeyProperties( List<IDBPropertyReference> props ) {
+        if( keyFields == null || keyFields.length == 0 ) return props;
+        List<IDBPropertyReference> res = new ArrayList<>( keyFields.length );
+        for( String keyField : keyFields ) {
+            IDBPropertyReference ref = wrapper.getPropertyByFieldName( keyField );
+            if( ref == null )
+                throw new IllegalArgumentException( "Key field " + keyField + " is not persistable." );
+            res.add( ref );
+        }
+        return res;
+    }
+
+    protected String getTableName( Object item ) {
+        String res = EntityMetadata.forInstance( item ).getTableName();
+        if( res == null || res.trim().isEmpty() )
+            throw new IllegalArgumentException( "Table name is not defined for " + item.getClass().getName() );
+        return res;
+    }
+
+    /**
+     * Convert value to type that is understandable by JDBC driver.
+     * @param value value of the property.
+     * @return parameter value.
+     */
+    protected Object toParameter( Object value ) {
+        if( value instanceof LocalDate )
+            return java.sql.Date.valueOf( ( LocalDate ) value );
+        if( value instanceof LocalDateTime )
+            return Timestamp.valueOf( ( LocalDateTime ) value );
+        return value;
+    }
+
+    protected String getKeyCondition( List<IDBPropertyReference> keys ) {
+        StringBuilder sb = new StringBuilder();
+        //without explicit keys NULL values must match as well
+        String op = keyFields == null || keyFields.length == 0 ? " IS NOT DISTINCT FROM ?" : " = ?";
+        for( IDBPropertyReference key : keys ) {
+            if( sb.length() > 0 ) sb.append( " AND " );
+            sb.append( key.getDBFieldName() ).append( op );
+        }
+        return sb.toString();
+    }
+
+    private void add( String sql, Object[] params ) {
+        List<Object[]> rows = batches.get( sql );
+        if( rows == null ) {
+            rows = new ArrayList<>();
+            batches.put( sql, rows );
+        }
+        rows.add( params );
+    }
+
+    private Object[] keyValues( Object item, List<IDBPropertyReference> keys, Object[] params, int from ) {
+        for( IDBPropertyReference key : keys )
+            params[from++] = toParameter( key.get( item ) );
+        return params;
+    }
+
+    protected void addDelete( T item, List<IDBPropertyReference> keys ) {
+        String sql = "DELETE FROM " + getTableName( item ) + " WHERE " + getKeyCondition( keys );
+        add( sql, keyValues( item, keys, new Object[keys.size()], 0 ) );
+    }
+
+    protected void addInsert( T item, List<IDBPropertyReference> props ) {
+        StringBuilder fields = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        Object[] params = new Object[props.size()];
+        int idx = 0;
+        for( IDBPropertyReference ref : props ) {
+            if( idx > 0 ) {
+                fields.append( ", " );
+                values.append( ", " );
+            }
+            fields.append( ref.getDBFieldName() );
+            values.append( "?" );
+            params[idx++] = toParameter( ref.get( item ) );
+        }
+        add( "INSERT INTO " + getTableName( item ) + " (" + fields + ") VALUES (" + values + ")", params );
+    }
+
+    /**
+     * @param pair updated row.
+     * @param changed properties that have to be written.
+     * @param keys properties that identify the row.
+     */
+    protected void addUpdate( BasicDAO.Pair<T> pair, List<IDBPropertyReference> changed,
+            List<IDBPropertyReference> keys ) {
+        if( changed.isEmpty() ) return;
+        StringBuilder sb = new StringBuilder( "UPDATE " ).append( getTableName( pair.getLastValue() ) )
+                .append( " SET " );
+        Object[] params = new Object[changed.size() + keys.size()];
+        int idx = 0;
+        for( IDBPropertyReference ref : changed ) {
+            if( idx > 0 ) sb.append( ", " );
+            sb.append( ref.getDBFieldName() ).append( " = ?" );
+            params[idx++] = toParameter( ref.get( pair.getLastValue() ) );
+        }
+        sb.append( " WHERE " ).append( getKeyCondition( keys ) );
+        //row is identified by values that were read from DB
+        for( IDBPropertyReference key : keys )
+            params[idx++] = toParameter( pair.getInitFieldValue( getOrdinal( key ), key ) );
+        add( sb.toString(), params );
+    }
+
+    private int getOrdinal( IDBPropertyReference ref ) {
+        return wrapper.getPropertyOrdinal( ref );
+    }
+
+    /**
+     * @param pair updated row.
+     * @param props persistable properties.
+     * @return properties that are marked as dirty or which values read from DB differ 
+     * from last values of the pair, initial row could be changed in place before replacement.
+     */
+    protected List<IDBPropertyReference> getChangedProperties( BasicDAO.Pair<T> pair,
+            List<IDBPropertyReference> props ) {
+        List<IDBPropertyReference> res = new ArrayList<>();
+        boolean replaced = pair.getInitValue() != pair.getLastValue();
+        for( IDBPropertyReference ref : props ) {
+            if( !ref.isWritable() ) continue;
+            int ordinal = getOrdinal( ref );
+            if( pair.isDirty( ordinal ) || replaced 
+                    && !Objects.equals( pair.getInitFieldValue( ordinal, ref ), ref.get( pair.getLastValue() ) ) )
+                res.add( ref );
+        }
+        return res;
+    }
+
+    /**
+     * Write changes in one transaction.
+     * On failure transaction is rolled back and exception is rethrown.
+     * @param con connection to DB.
+     * @param added added rows.
+     * @param updated updated rows.
+     * @param removed removed rows.
+     * @throws SQLException
+     */
+    public void commit( Connection con, List<T> added, List<BasicDAO.Pair<T>> updated, List<T> removed )
+            throws SQLException {
+        batches.clear();
+        List<IDBPropertyReference> props = getPersistableProperties();
+        if( props.isEmpty() )
+            throw new IllegalStateException( "There are no persistable properties." );
+        List<IDBPropertyReference> keys = getKeyProperties( props );
+        for( T item : removed )
+            addDelete( item, keys );
+        for( BasicDAO.Pair<T> pair : updated )
+            addUpdate( pair, getChangedProperties( pair, props ), keys );
+        for( T item : added )
+            addInsert( item, props );
+        if( batches.isEmpty() ) return;
+
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit( false );
+        try {
+            for( Map.Entry<String, List<Object[]>> batch : batches.entrySet() ) {
+                execute( con, batch.getKey(), batch.getValue() );
+            }
+            con.commit();
+        } catch( SQLException | RuntimeException ex ) {
+            //failures of cleanup must not hide the cause
+            try {
+                con.rollback();
+            } catch( SQLException | RuntimeException rollbackEx ) {
+                ex.addSuppressed( rollbackEx );
+            }
+            try {
+                con.setAutoCommit( autoCommit );
+            } catch( SQLException | RuntimeException restoreEx ) {
+                ex.addSuppressed( restoreEx );
+            }
+            throw ex;
+        } finally {
+            batches.clear();
+        }
+        con.setAutoCommit( autoCommit );
+    }
+
+    protected void execute( Connection con, String sql, List<Object[]> rows ) throws SQLException {
+        StatementCache cache = StatementCache.forConnection( con );
+        PreparedStatement ps = cache.prepare( sql );
+        try {
+            for( Object[] params : rows ) {
+                for( int i = 0; i < params.length; i++ )
+                    ps.setObject( i + 1, params[i] );
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            for( int i = 0; i < counts.length; i++ ) {
+                if( counts[i] == 0 )
+                    throw new SQLException( "Row was not found by statement: " + sql
+                            + " with parameters " + Arrays.toString( rows.get( i ) ) );
+            }
+        } finally {
+            cache.release( ps );
+        }
+    }
+
+}
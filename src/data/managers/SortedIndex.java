@@ -0,0 +1,158 @@
+package data.managers;
+
+import data.wrappers.IDBPropertyReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Sorted index of rows of an observable list by value of a property.
+ * Values must be mutually comparable, rows with {@code null} value are kept
+ * apart and they are not returned by range lookups.
+ * Range lookups cost O(log n + k), where k is count of found rows.
+ *
+ * @author Belkin Sergei
+ * @param <T> type of rows.
+ */
+public class SortedIndex<T> extends RowIndex<T> {
+
+    private static final Object NULL_KEY = new Object();
+
+    /**
+     * Rows by value, value is a row or bucket of rows with the same value.
+     */
+    private final TreeMap<Object, Object> rows;
+    private final Map<Object, Object> nulls = new HashMap<>( 2 );
+
+    /**
+     * Index by natural order of values.
+     * @param property indexed property.
+     */
+    public SortedIndex( IDBPropertyReference property ) {
+        this( property, null );
+    }
+
+    /**
+     * @param property indexed property.
+     * @param comparator order of values, {@code null} means natural order.
+     */
+    public SortedIndex( IDBPropertyReference property, Comparator<Object> comparator ) {
+        super( property );
+        this.rows = new TreeMap<>( comparator );
+    }
+
+    @Override
+    protected void put( Object key, T row ) {
+        if( key == null ) {
+            putRow( nulls, NULL_KEY, row );
+        } else {
+            putRow( rows, key, row );
+        }
+    }
+
+    @Override
+    protected void delete( Object key, T row ) {
+        if( key == null ) {
+            deleteRow( nulls, NULL_KEY, row );
+        } else {
+            deleteRow( rows, key, row );
+        }
+    }
+
+    @Override
+    protected void clear() {
+        rows.clear();
+        nulls.clear();
+    }
+
+    /**
+     * @param value value of the property, {@code null} is allowed.
+     * @return rows with the value.
+     */
+    public List<T> get( Object value ) {
+        List<T> res = new ArrayList<>();
+        collectRows( value == null ? nulls.get( NULL_KEY ) : rows.get( value ), res );
+        return Collections.unmodifiableList( res );
+    }
+
+    /**
+     * @param from low bound, {@code null} means no bound.
+     * @param fromInclusive true if the low bound is included.
+     * @param to high bound, {@code null} means no bound.
+     * @param toInclusive true if the high bound is included.
+     * @return rows with values in the range in order of values.
+     */
+    public List<T> range( Object from, boolean fromInclusive, Object to, boolean toInclusive ) {
+        NavigableMap<Object, Object> range = rows;
+        if( from != null && to != null ) {
+            if( compare( from, to ) > 0 ) return Collections.emptyList();
+            range = rows.subMap( from, fromInclusive, to, toInclusive );
+        } else if( from != null ) {
+            range = rows.tailMap( from, fromInclusive );
+        } else if( to != null ) {
+            range = rows.headMap( to, toInclusive );
+        }
+        List<T> res = new ArrayList<>();
+        for( Object bucket : range.values() )
+            collectRows( bucket, res );
+        return Collections.unmodifiableList( res );
+    }
+
+    /**
+     * @param a value, not {@code null}.
+     * @param b value, not {@code null}.
+     * @return result of comparison of the values in order of the index.
+     */
+    public int compare( Object a, Object b ) {
+        return rows.comparator() == null ? ( ( Comparable<Object> ) a ).compareTo( b )
+                : rows.comparator().compare( a, b );
+    }
+
+    /**
+     * @param value value, {@code null} is out of any range.
+     * @param from low bound, {@code null} means no bound.
+     * @param fromInclusive true if the low bound is included.
+     * @param to high bound, {@code null} means no bound.
+     * @param toInclusive true if the high bound is included.
+     * @return true if the value is in the range.
+     */
+    public boolean inRange( Object value, Object from, boolean fromInclusive, Object to, boolean toInclusive ) {
+        if( value == null ) return false;
+        if( from != null ) {
+            int res = compare( value, from );
+            if( res < 0 || res == 0 && !fromInclusive ) return false;
+        }
+        if( to != null ) {
+            int res = compare( value, to );
+            if( res > 0 || res == 0 && !toInclusive ) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the least value or {@code null} if there are no rows with values.
+     */
+    public Object getMin() {
+        return rows.isEmpty() ? null : rows.firstKey();
+    }
+
+    /**
+     * @return the greatest value or {@code null} if there are no rows with values.
+     */
+    public Object getMax() {
+        return rows.isEmpty() ? null : rows.lastKey();
+    }
+
+    /**
+     * @return count of distinct values except {@code null}.
+     */
+    public int getValueCount() {
+        return rows.size();
+    }
+
+}
@@ -0,0 +1,109 @@
+package data.wrappers;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Typed reader that transfers value of one column of a {@code ResultSet}
+ * into a property of an object.
+ * Reader is chosen once per property by {@link #forType(Class)}, so no
+ * type dispatching is needed while rows are read.
+ * Values are read by column index.
+ * Numeric and boolean values are passed through primitive accessors
+ * of {@code IPropertyReference}.
+ *
+ * @author Belkin Sergei
+ */
+enum ColumnReader {
+
+    SHORT {
+        @Override
+        void read( ResultSet rs, int column, Object target, IDBPropertyReference ref )
+                throws SQLException {
+            ref.setShort( target, rs.getShort( column ) );
+        }
+    },
+    INTEGER {
+        @Override
+        void read( ResultSet rs, int column, Object target, IDBPropertyReference ref )
+                throws SQLException {
+            ref.setInt( target, rs.getInt( column ) );
+        }
+    },
+    LONG {
+        @Override
+        void read( ResultSet rs, int column, Object target, IDBPropertyReference ref )
+                throws SQLException {
+            ref.setLong( target, rs.getLong( column ) );
+        }
+    },
+    DOUBLE {
+        @Override
+        void read( ResultSet rs, int column, Object target, IDBPropertyReference ref )
+                throws SQLException {
+            ref.setDouble( target, rs.getDouble( column ) );
+        }
+    },
+    BOOLEAN {
+        @Override
+        void read( ResultSet rs, int column, Object target, IDBPropertyReference ref )
+                throws SQLException {
+            ref.setBoolean( target, rs.getBoolean( column ) );
+        }
+    },
+    BIG_DECIMAL {
+        @Override
+        void read( ResultSet rs, int column, Object target, IDBPropertyReference ref )
+                throws SQLException {
+            ref.set( target, rs.getBigDecimal( column ) );
+        }
+    },
+    LOCAL_DATE {
+        @Override
+        void read( ResultSet rs, int column, Object target, IDBPropertyReference ref )
+                throws SQLException {
+            Date date = rs.getDate( column );
+            ref.set( target, date == null ? null : date.toLocalDate() );
+        }
+    },
+    LOCAL_DATE_TIME {
+        @Override
+        void read( ResultSet rs, int column, Object target, IDBPropertyReference ref )
+                throws SQLException {
+            Timestamp date = rs.getTimestamp( column );
+            ref.set( target, date == null ? null : date.toLocalDateTime() );
+        }
+    },
+    STRING {
+        @Override
+        void read( ResultSet rs, int column, Object target, IDBPropertyReference ref )
+                throws SQLException {
+            ref.set( target, rs.getString( column ) );
+        }
+    };
+
+    abstract void read( ResultSet rs, int column, Object target, IDBPropertyReference ref )
+            throws SQLException;
+
+    /**
+     * @param type type of the property.
+     * @return reader that corresponds given type, {@code STRING} by default.
+     */
+    static ColumnReader forType( Class<?> type ) {
+        if( type == Short.class || type == short.class ) return SHORT;
+        if( type == Integer.class || type == int.class ) return INTEGER;
+        if( type == Long.class || type == long.class ) return LONG;
+        if( type == Double.class || type == double.class ) return DOUBLE;
+        if( type == Boolean.class || type == boolean.class ) return BOOLEAN;
+        if( type == BigDecimal.class ) return BIG_DECIMAL;
+        if( type == LocalDate.class ) return LOCAL_DATE;
+        if( type == LocalDateTime.class ) return LOCAL_DATE_TIME;
+        return STRING;
+    }
+
+}
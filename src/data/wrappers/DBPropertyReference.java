@@ -1,5 +1,6 @@
 package data.wrappers;
 
+import data.entities.EntityMetadata;
 import data.entities.IEntity;
 import data.entities.IField;
 import java.lang.reflect.Field;
@@ -27,6 +28,14 @@ public class DBPropertyReference<T> implements IDBPropertyReference<T> {
         return dbFieldInfo;
     }
 
+    protected Method getReadMethod() {
+        return readMethod;
+    }
+
+    protected Method getWriteMethod() {
+        return writeMethod;
+    }
+
     @Override
     public boolean isReadable() {
         return readMethod != null;
@@ -73,15 +82,15 @@ public class DBPropertyReference<T> implements IDBPropertyReference<T> {
         if( inst == null ) {
             throw new NullPointerException( "IEntity must be set." );
         }
-        String fieldPropertyName = "FIELD_NAME_" + field.getName().toUpperCase();
-        for( IField e : ( ( IEntity ) inst ).getFieldNames() ) {
-            String enumName = e.toString();
-            String enumValue = e.getDBFieldName();
-            if( fieldPropertyName.equals( enumName ) && enumValue != null && !enumValue.trim().isEmpty() ) {
-                dbFieldInfo = e;
-                break;
-            }
-        }
+        initDBProperty( EntityMetadata.forInstance( inst ) );
+    }
+
+    /**
+     * @param metadata metadata of the entity, it can be obtained from {@code IEntity} 
+     * or from annotations.
+     */
+    public void initDBProperty( EntityMetadata metadata ) {
+        dbFieldInfo = metadata.getField( field.getName() );
     }
 
     @Override
@@ -1,9 +1,6 @@
 package data.wrappers;
 
-import annotations.PersistedEntity;
-import annotations.PersistedField;
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Field;
+import data.entities.EntityMetadata;
 
 /**
  * This implementation uses anotations to determine persistence.
@@ -35,25 +32,9 @@ public class DBPropertyReferenceAnnotation<T> extends DBPropertyReferenceProps<T
     protected void initDBProperty() {
         if( !init ) {
             init = true;
-            Class<?> cls = propertyRef.getContainingClass();
-            for( Annotation a : cls.getAnnotations() ) {
-                if( a instanceof PersistedEntity && !( (PersistedEntity) a).value().trim().isEmpty() )  {
-                    try {
-                        Field field = cls.getDeclaredField( propertyRef.getName() );
-                        for( Annotation af : field.getAnnotations() ) {
-                            if( af instanceof PersistedField ) {
-                                dbFieldName = ((PersistedField) af).value();
-                                if( dbFieldName == null || dbFieldName.trim().isEmpty() )
-                                    throw new NoSuchFieldException( "Annotation value is empty" );
-                            }
-                        }
-                    } catch(NoSuchFieldException | SecurityException ex) {
-                        ex.printStackTrace();
-                        dbFieldName = null;
-                    }
-                    break;
-                }
-            }
+            //annotations are read once per class
+            dbFieldName = EntityMetadata.forClass( propertyRef.getContainingClass() )
+                    .getAnnotatedFieldName( propertyRef.getName() );
         }
     }
 
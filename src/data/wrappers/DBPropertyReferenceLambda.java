@@ -0,0 +1,214 @@
+package data.wrappers;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * This implementation generates accessors once per property instead of
+ * calling {@code Method.invoke} on every access.
+ * For public classes getter and setter are spinned by {@code LambdaMetafactory},
+ * so calls can be inlined by JIT. For other classes it falls back to
+ * {@code MethodHandle}.
+ * Properties of {@code int}, {@code long} and {@code double} types also get
+ * primitive accessors, so values are not boxed.
+ *
+ * @author Belkin Sergei
+ * @param <T>
+ */
+public class DBPropertyReferenceLambda<T> extends DBPropertyReference<T> {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private Function<Object, Object> getter;
+    private BiConsumer<Object, Object> setter;
+    private ToIntFunction<Object> intGetter;
+    private ObjIntConsumer<Object> intSetter;
+    private ToLongFunction<Object> longGetter;
+    private ObjLongConsumer<Object> longSetter;
+    private ToDoubleFunction<Object> doubleGetter;
+    private ObjDoubleConsumer<Object> doubleSetter;
+
+    public DBPropertyReferenceLambda( Field field, Class<?> cls ) {
+        super( field, cls );
+        try {
+            initAccessors();
+        } catch( Throwable ex ) {
+            throw new RuntimeException( ex );
+        }
+    }
+
+    private static boolean isAccessible( Method method ) {
+        return Modifier.isPublic( method.getModifiers() )
+                && Modifier.isPublic( method.getDeclaringClass().getModifiers() );
+    }
+
+    private void initAccessors() throws Throwable {
+        Method readMethod = getReadMethod();
+        Method writeMethod = getWriteMethod();
+        if( readMethod != null ) {
+            if( !isAccessible( readMethod ) ) readMethod.setAccessible( true );
+            MethodHandle handle = LOOKUP.unreflect( readMethod );
+            getter = isAccessible( readMethod ) ? spinGetter( handle ) : handleGetter( handle );
+            if( isAccessible( readMethod ) ) initPrimitiveGetter( handle );
+        }
+        if( writeMethod != null ) {
+            if( !isAccessible( writeMethod ) ) writeMethod.setAccessible( true );
+            MethodHandle handle = LOOKUP.unreflect( writeMethod );
+            setter = isAccessible( writeMethod ) ? spinSetter( handle ) : handleSetter( handle );
+            if( isAccessible( writeMethod ) ) initPrimitiveSetter( handle );
+        }
+    }
+
+    private void initPrimitiveGetter( MethodHandle handle ) throws Throwable {
+        Class<?> type = handle.type().returnType();
+        if( type == int.class ) {
+            intGetter = ( ToIntFunction<Object> ) spin( handle, ToIntFunction.class, "applyAsInt",
+                    MethodType.methodType( int.class, Object.class ), handle.type() );
+        } else if( type == long.class ) {
+            longGetter = ( ToLongFunction<Object> ) spin( handle, ToLongFunction.class, "applyAsLong",
+                    MethodType.methodType( long.class, Object.class ), handle.type() );
+        } else if( type == double.class ) {
+            doubleGetter = ( ToDoubleFunction<Object> ) spin( handle, ToDoubleFunction.class, "applyAsDouble",
+                    MethodType.methodType( double.class, Object.class ), handle.type() );
+        }
+    }
+
+    private void initPrimitiveSetter( MethodHandle handle ) throws Throwable {
+        Class<?> type = handle.type().parameterType( 1 );
+        MethodType instantiated = handle.type().changeReturnType( void.class );
+        if( type == int.class ) {
+            intSetter = ( ObjIntConsumer<Object> ) spin( handle, ObjIntConsumer.class, "accept",
+                    MethodType.methodType( void.class, Object.class, int.class ), instantiated );
+        } else if( type == long.class ) {
+            longSetter = ( ObjLongConsumer<Object> ) spin( handle, ObjLongConsumer.class, "accept",
+                    MethodType.methodType( void.class, Object.class, long.class ), instantiated );
+        } else if( type == double.class ) {
+            doubleSetter = ( ObjDoubleConsumer<Object> ) spin( handle, ObjDoubleConsumer.class, "accept",
+                    MethodType.methodType( void.class, Object.class, double.class ), instantiated );
+        }
+    }
+
+    private static Object spin( MethodHandle handle, Class<?> iface, String name,
+            MethodType samType, MethodType instantiatedType ) throws Throwable {
+        CallSite site = LambdaMetafactory.metafactory( LOOKUP, name,
+                MethodType.methodType( iface ), samType, handle, instantiatedType );
+        return site.getTarget().invoke();
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static Function<Object, Object> spinGetter( MethodHandle handle ) throws Throwable {
+        CallSite site = LambdaMetafactory.metafactory( LOOKUP, "apply",
+                MethodType.methodType( Function.class ),
+                MethodType.methodType( Object.class, Object.class ),
+                handle, handle.type().wrap() );
+        return ( Function<Object, Object> ) site.getTarget().invokeExact();
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static BiConsumer<Object, Object> spinSetter( MethodHandle handle ) throws Throwable {
+        CallSite site = LambdaMetafactory.metafactory( LOOKUP, "accept",
+                MethodType.methodType( BiConsumer.class ),
+                MethodType.methodType( void.class, Object.class, Object.class ),
+                handle, handle.type().wrap().changeReturnType( void.class ) );
+        return ( BiConsumer<Object, Object> ) site.getTarget().invokeExact();
+    }
+
+    private static Function<Object, Object> handleGetter( MethodHandle handle ) {
+        MethodHandle h = handle.asType( MethodType.methodType( Object.class, Object.class ) );
+        return ( inst ) -> {
+            try {
+                return ( Object ) h.invokeExact( inst );
+            } catch( RuntimeException | Error ex ) {
+                throw ex;
+            } catch( Throwable ex ) {
+                throw new RuntimeException( ex );
+            }
+        };
+    }
+
+    private static BiConsumer<Object, Object> handleSetter( MethodHandle handle ) {
+        MethodHandle h = handle.asType( MethodType.methodType( void.class, Object.class, Object.class ) );
+        return ( inst, arg ) -> {
+            try {
+                h.invokeExact( inst, arg );
+            } catch( RuntimeException | Error ex ) {
+                throw ex;
+            } catch( Throwable ex ) {
+                throw new RuntimeException( ex );
+            }
+        };
+    }
+
+    @Override
+    public void set( Object inst, T arg ) {
+        if( setter != null ) {
+            setter.accept( inst, arg );
+        }
+    }
+
+    @Override
+    public T get( Object inst ) {
+        T result = null;
+        if( getter != null ) {
+            result = ( T ) getter.apply( inst );
+        }
+        return result;
+    }
+
+    @Override
+    public int getInt( Object inst ) {
+        return intGetter != null ? intGetter.applyAsInt( inst ) : super.getInt( inst );
+    }
+
+    @Override
+    public void setInt( Object inst, int arg ) {
+        if( intSetter != null ) {
+            intSetter.accept( inst, arg );
+        } else {
+            super.setInt( inst, arg );
+        }
+    }
+
+    @Override
+    public long getLong( Object inst ) {
+        return longGetter != null ? longGetter.applyAsLong( inst ) : super.getLong( inst );
+    }
+
+    @Override
+    public void setLong( Object inst, long arg ) {
+        if( longSetter != null ) {
+            longSetter.accept( inst, arg );
+        } else {
+            super.setLong( inst, arg );
+        }
+    }
+
+    @Override
+    public double getDouble( Object inst ) {
+        return doubleGetter != null ? doubleGetter.applyAsDouble( inst ) : super.getDouble( inst );
+    }
+
+    @Override
+    public void setDouble( Object inst, double arg ) {
+        if( doubleSetter != null ) {
+            doubleSetter.accept( inst, arg );
+        } else {
+            super.setDouble( inst, arg );
+        }
+    }
+
+}
@@ -1,6 +1,7 @@
 package data.wrappers;
 
 import com.sun.javafx.property.PropertyReference;
+import data.entities.EntityMetadata;
 import data.entities.IEntity;
 import data.entities.IField;
 import java.lang.reflect.Field;
@@ -47,17 +48,7 @@ public class DBPropertyReferenceProps<T> implements IDBPropertyReference<T> {
     
     public void initDBProperty( IEntity inst ) {
         if( inst == null ) throw new NullPointerException( "IEntity argument must be set." );
-        String fieldPropName = "FIELD_NAME_" + propertyRef.getName().toUpperCase();
-        for( IField e : ( ( IEntity ) inst ).getFieldNames() ) {
-            String enumName = e.toString();
-            String enumValue = e.getDBFieldName();
-            if( fieldPropName.equals( enumName ) 
-                    && enumValue != null 
-                    && !enumValue.trim().isEmpty() ) {
-                dbField = e;
-                break;
-            }
-        }
+        dbField = EntityMetadata.forInstance( inst ).getField( propertyRef.getName() );
     }
 
     @Override
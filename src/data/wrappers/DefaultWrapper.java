@@ -1,12 +1,18 @@
 package data.wrappers;
 
+import data.entities.EntityMetadata;
 import data.entities.IEntity;
 import java.lang.reflect.Field;
-import java.sql.Date;
 import java.sql.ResultSet;
-import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Basic implementation of {@code Wrapper}.
@@ -19,10 +25,92 @@ public class DefaultWrapper<T, C extends IEntity> implements Wrapper<T, C> {
     
     private boolean needInitProperties = true;
     private final List<IDBPropertyReference> properties = new ArrayList<>();
+    private final List<IDBPropertyReference> propertiesView = Collections.unmodifiableList( properties );
+    
+    /**
+     * Immutable lookup maps of properties, they are built once properties are initialized.
+     */
+    private static final class PropertyIndex {
+        
+        private static final PropertyIndex EMPTY = new PropertyIndex( Collections.emptyList() );
+        
+        private final Map<String, IDBPropertyReference> byName;
+        private final Map<String, IDBPropertyReference> byFieldName;
+        private final Map<IDBPropertyReference, Integer> ordinals;
+
+        PropertyIndex( List<IDBPropertyReference> props ) {
+            Map<String, IDBPropertyReference> names = new HashMap<>();
+            Map<String, IDBPropertyReference> fieldNames = new HashMap<>();
+            Map<IDBPropertyReference, Integer> idx = new IdentityHashMap<>();
+            for( int i = 0; i < props.size(); i++ ) {
+                IDBPropertyReference p = props.get( i );
+                //first match wins as it was with sequential search
+                names.putIfAbsent( p.getName(), p );
+                if( p.getDBFieldName() != null ) fieldNames.putIfAbsent( p.getDBFieldName(), p );
+                idx.putIfAbsent( p, i );
+            }
+            this.byName = Collections.unmodifiableMap( names );
+            this.byFieldName = Collections.unmodifiableMap( fieldNames );
+            this.ordinals = Collections.unmodifiableMap( idx );
+        }
+        
+    }
+    
+    private volatile PropertyIndex index = PropertyIndex.EMPTY;
+    /**
+     * Mapping plans that were built for wrapped classes.
+     */
+    private final Map<Class<?>, MappingPlan> plans = new ConcurrentHashMap<>();
+    /**
+     * Shared property references of entity class by field and access mode.
+     * {@code ClassValue} doesn't keep classes and their loaders from unloading.
+     */
+    private static final ClassValue<ConcurrentMap<List<Object>, IDBPropertyReference>> SHARED_REFS = 
+            new ClassValue<ConcurrentMap<List<Object>, IDBPropertyReference>>() {
+        @Override
+        protected ConcurrentMap<List<Object>, IDBPropertyReference> computeValue( Class<?> type ) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    /**
+     * Plan bound to {@code ResultSet} that is being read by current thread,
+     * so concurrent fetches don't rebind each other's plan.
+     */
+    private final ThreadLocal<MappingPlan.Binding> binding = new ThreadLocal<>();
+    /**
+     * Kind of property references created by {@code getPropertyRef}.
+     */
+    private PropertyAccessMode accessMode = PropertyAccessMode.LAMBDA;
+
+    public PropertyAccessMode getAccessMode() {
+        return accessMode;
+    }
 
+    /**
+     * Switch implementation of property references.
+     * Already built mapping plans and properties are discarded.
+     * @param accessMode kind of property references.
+     */
+    public void setAccessMode( PropertyAccessMode accessMode ) {
+        if( accessMode == null ) throw new NullPointerException( "Access mode must be set." );
+        if( this.accessMode != accessMode ) {
+            this.accessMode = accessMode;
+            synchronized( properties ) {
+                plans.clear();
+                properties.clear();
+                index = PropertyIndex.EMPTY;
+                needInitProperties = true;
+            }
+        }
+    }
+
+    /**
+     * @return read only list of persistable properties, 
+     * position in the list is an ordinal of the property.
+     */
     @Override
     public List<IDBPropertyReference> getProperties() {
-        return properties;
+        return propertiesView;
     }
     
     protected T getInstance( Class<C> cls ) 
@@ -30,54 +118,45 @@ public class DefaultWrapper<T, C extends IEntity> implements Wrapper<T, C> {
         return ( T ) cls.newInstance();
     }
     
+    /**
+     * Property references are shared by all wrappers, they are created once per 
+     * class of entity, field and access mode.
+     */
     protected IDBPropertyReference getPropertyRef( T result, Field field, Class<?> cls ) {
-        DBPropertyReference res = new DBPropertyReference( field, cls );
-        res.initDBProperty( ( IEntity ) result );
+        ConcurrentMap<List<Object>, IDBPropertyReference> refs = SHARED_REFS.get( result.getClass() );
+        List<Object> key = Arrays.asList( field, accessMode );
+        IDBPropertyReference res = refs.get( key );
+        if( res == null ) {
+            DBPropertyReference ref;
+            switch( accessMode ) {
+                case REFLECTION:
+                    ref = new DBPropertyReference( field, cls );
+                    break;
+                default:
+                    ref = new DBPropertyReferenceLambda( field, cls );
+            }
+            ref.initDBProperty( EntityMetadata.forInstance( result ) );
+            res = refs.putIfAbsent( key, ref );
+            if( res == null ) res = ref;
+        }
         return res;
     }
     
-    protected void handleClassFields(T result, ResultSet rs, Class<?> classLoop) {
+    /**
+     * Collect persistable properties declared in given class.
+     * 
+     * @param result instance that is used to obtain info about DB fields.
+     * @param classLoop class which declared fields are handled.
+     * @param columns list that receives mapped columns.
+     */
+    protected void handleClassFields( T result, Class<?> classLoop, List<MappingPlan.Column> columns ) {
         Field[] fields = classLoop.getDeclaredFields();
         for( Field field : fields ) {
             IDBPropertyReference propertyRef = null;
             try {
                 propertyRef = getPropertyRef( result, field, classLoop );
                 if( propertyRef.isReadable() && propertyRef.isWritable() && propertyRef.isPersistable() ) {
-                    if( needInitProperties ) properties.add( propertyRef );
-                    String fieldType = propertyRef.getType().getName();
-                    String fieldName = propertyRef.getDBFieldName();
-                    switch( fieldType ) {
-                        case "java.lang.Short":
-                            propertyRef.set( result, rs.getShort( fieldName ) );
-                            break;
-                        case "java.lang.Integer":
-                            propertyRef.set( result, rs.getInt( fieldName ) );
-                            break;
-                        case "java.lang.Long":
-                            propertyRef.set( result, rs.getLong( fieldName ) );
-                            break;
-                        case "java.lang.Double":
-                            propertyRef.set( result, rs.getDouble( fieldName ) );
-                            break;
-                        case "java.lang.Boolean":
-                            propertyRef.set( result, rs.getBoolean( fieldName ) );
-                            break;
-                        case "java.math.BigDecimal":
-                            propertyRef.set( result, rs.getBigDecimal( fieldName ) );
-                            break;
-                        case "java.time.LocalDate": {
-                            Date date = rs.getDate( fieldName );
-                            propertyRef.set( result, date == null ? null : date.toLocalDate() );
-                            break;
-                        }
-                        case "java.time.LocalDateTime": {
-                            Timestamp date = rs.getTimestamp( fieldName );
-                            propertyRef.set( result, date == null ? null : date.toLocalDateTime() );
-                            break;
-                        }
-                        default:
-                            propertyRef.set( result, rs.getString( fieldName ) );
-                    }
+                    columns.add( new MappingPlan.Column( propertyRef ) );
                 }
             } catch( Exception ex) {
                 /**
@@ -96,18 +175,16 @@ public class DefaultWrapper<T, C extends IEntity> implements Wrapper<T, C> {
     }
     
     /**
-     * This implementation does not throw any exceptions.
+     * Return mapping plan for given class, build it on first call.
      * 
-     * @param rs {@code ResultSet} instance from which data will be extracted.
-     * @param cls {@code Class} that will be instatiated.
-     * @return <T> It is allowed to return {@code null} value.
+     * @param result instance of {@code cls} that is used to obtain info about DB fields.
+     * @param cls class for which plan is requested.
+     * @return MappingPlan.
      */
-    @Override
-    public T wrap( ResultSet rs, Class<C> cls ) {                
-        T result = null;
-        try {
-            result = getInstance( cls );
-            
+    protected MappingPlan getPlan( T result, Class<?> cls ) {
+        MappingPlan plan = plans.get( cls );
+        if( plan == null ) {
+            List<MappingPlan.Column> columns = new ArrayList<>();
             Class<?> classLoop = cls;
             /**
              * Because {@code Class.getDeclaredFields()) provides all fields 
@@ -116,7 +193,7 @@ public class DefaultWrapper<T, C extends IEntity> implements Wrapper<T, C> {
             */
             while( classLoop != Object.class ) {
                 try {
-                    handleClassFields( result, rs, classLoop );
+                    handleClassFields( result, classLoop, columns );
                 } catch( Exception e ) {
                     /**
                      * If something went wrong we skip that portion of class.
@@ -125,8 +202,59 @@ public class DefaultWrapper<T, C extends IEntity> implements Wrapper<T, C> {
                 }
                 classLoop = classLoop.getSuperclass();
             }
+            plan = new MappingPlan( columns );
+            MappingPlan prev = plans.putIfAbsent( cls, plan );
+            if( prev != null ) {
+                plan = prev;
+            }
             //init properties list only for first time
-            needInitProperties = false;
+            synchronized( properties ) {
+                if( needInitProperties ) {
+                    properties.addAll( plan.getProperties() );
+                    index = new PropertyIndex( properties );
+                    needInitProperties = false;
+                }
+            }
+        }
+        return plan;
+    }
+    
+    /**
+     * Build properties list for given class without wrapping any row.
+     * It's needed when properties are requested before first opening.
+     * 
+     * @param cls {@code Class} that will be instatiated.
+     */
+    public void initProperties( Class<C> cls ) {
+        if( plans.containsKey( cls ) ) return;
+        try {
+            getPlan( getInstance( cls ), cls );
+        } catch( InstantiationException | IllegalAccessException ex ) {
+            throw new RuntimeException( ex );
+        }
+    }
+    
+    /**
+     * This implementation does not throw any exceptions.
+     * Mapping of the class is resolved only once, later calls reuse it.
+     * Column indexes are resolved once per {@code ResultSet}.
+     * 
+     * @param rs {@code ResultSet} instance from which data will be extracted.
+     * @param cls {@code Class} that will be instatiated.
+     * @return <T> It is allowed to return {@code null} value.
+     */
+    @Override
+    public T wrap( ResultSet rs, Class<C> cls ) {                
+        T result = null;
+        try {
+            result = getInstance( cls );
+            MappingPlan plan = getPlan( result, cls );
+            MappingPlan.Binding b = binding.get();
+            if( b == null || !b.isBoundTo( plan, rs ) ) {
+                b = plan.bind( rs );
+                binding.set( b );
+            }
+            b.map( rs, result );
         } catch( Exception ex ) {
             ex.printStackTrace();
         }
@@ -135,20 +263,14 @@ public class DefaultWrapper<T, C extends IEntity> implements Wrapper<T, C> {
 
     @Override
     public boolean hasProperty( String name ) {
-        boolean res = false;
-        if( properties != null && !properties.isEmpty() ) {
-            res = properties.stream().filter( c -> c.getName().equals( name ) ).count() > 0;
-        }
-        return res;
+        return index.byName.containsKey( name );
     }
 
     protected IDBPropertyReference getProperty( String name, String fieldName ) {
-        IDBPropertyReference res = null;
-        if( properties != null && !properties.isEmpty() ) {
-            res = properties.stream().filter( ( p ) -> {
-                return p.getName().equals( name ) || p.getDBFieldName().equals( fieldName );
-            } ).findFirst().orElse( null );
-        }
+        PropertyIndex idx = index;
+        IDBPropertyReference res = name == null ? null : idx.byName.get( name );
+        if( res == null && fieldName != null )
+            res = idx.byFieldName.get( fieldName );
         return res;
     }
     
@@ -163,4 +285,10 @@ public class DefaultWrapper<T, C extends IEntity> implements Wrapper<T, C> {
         return getProperty( null, fieldName );
     }    
     
+    @Override
+    public int getPropertyOrdinal( IDBPropertyReference ref ) {
+        Integer res = ref == null ? null : index.ordinals.get( ref );
+        return res == null ? -1 : res;
+    }
+    
 }
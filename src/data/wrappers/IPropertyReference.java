@@ -15,4 +15,55 @@ public interface IPropertyReference<T> {
     Class<?> getType();
     String getName(); 
     
+    /**
+     * Primitive specialized accessors.
+     * Default implementations box values and delegate to {@code get}/{@code set},
+     * implementations may override them to avoid boxing.
+     * Getters return {@code 0} ({@code false}) for {@code null} values.
+     */
+    default short getShort( Object inst ) {
+        Number res = ( Number ) get( inst );
+        return res == null ? 0 : res.shortValue();
+    }
+    
+    default void setShort( Object inst, short arg ) {
+        set( inst, ( T ) ( Object ) arg );
+    }
+    
+    default int getInt( Object inst ) {
+        Number res = ( Number ) get( inst );
+        return res == null ? 0 : res.intValue();
+    }
+    
+    default void setInt( Object inst, int arg ) {
+        set( inst, ( T ) ( Object ) arg );
+    }
+    
+    default long getLong( Object inst ) {
+        Number res = ( Number ) get( inst );
+        return res == null ? 0L : res.longValue();
+    }
+    
+    default void setLong( Object inst, long arg ) {
+        set( inst, ( T ) ( Object ) arg );
+    }
+    
+    default double getDouble( Object inst ) {
+        Number res = ( Number ) get( inst );
+        return res == null ? 0d : res.doubleValue();
+    }
+    
+    default void setDouble( Object inst, double arg ) {
+        set( inst, ( T ) ( Object ) arg );
+    }
+    
+    default boolean getBoolean( Object inst ) {
+        Boolean res = ( Boolean ) get( inst );
+        return res == null ? false : res;
+    }
+    
+    default void setBoolean( Object inst, boolean arg ) {
+        set( inst, ( T ) ( Object ) arg );
+    }
+    
 }
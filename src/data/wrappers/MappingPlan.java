@@ -0,0 +1,144 @@
+package data.wrappers;
+
+import java.lang.ref.WeakReference;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Precompiled mapping of {@code ResultSet} columns onto properties of a class.
+ * Plan is built once per class by {@code DefaultWrapper} and then reused
+ * for every row, so wrapping a row costs only getter calls of {@code ResultSet}
+ * and setter calls of the instance.
+ * Before reading plan is bound to a {@code ResultSet}: labels of columns are
+ * resolved to indexes once, values are read by index thereafter.
+ *
+ * @author Belkin Sergei
+ */
+public class MappingPlan {
+
+    /**
+     * Single mapped column.
+     */
+    public static class Column {
+
+        private final IDBPropertyReference propertyRef;
+        private final String label;
+        private final ColumnReader reader;
+
+        public Column( IDBPropertyReference propertyRef ) {
+            this.propertyRef = propertyRef;
+            this.label = propertyRef.getDBFieldName();
+            this.reader = ColumnReader.forType( propertyRef.getType() );
+        }
+
+        public IDBPropertyReference getPropertyRef() {
+            return propertyRef;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+    }
+
+    private final Column[] columns;
+    private final List<IDBPropertyReference> properties;
+
+    MappingPlan( List<Column> columns ) {
+        this.columns = columns.toArray( new Column[columns.size()] );
+        List<IDBPropertyReference> props = new ArrayList<>( columns.size() );
+        for( Column column : columns )
+            props.add( column.getPropertyRef() );
+        this.properties = Collections.unmodifiableList( props );
+    }
+
+    /**
+     * @return persistable properties in order of mapping.
+     */
+    public List<IDBPropertyReference> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Resolve labels of columns to their indexes in given {@code ResultSet}.
+     * Columns that are absent in the query are reported once and skipped.
+     *
+     * @param rs {@code ResultSet} which rows will be mapped.
+     * @return Binding of this plan to the {@code ResultSet}.
+     * @throws SQLException
+     */
+    public Binding bind( ResultSet rs ) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        Map<String, Integer> indexes = new HashMap<>();
+        for( int i = md.getColumnCount(); i > 0; i-- ) {
+            //as ResultSet.findColumn: case insensitive, first match wins
+            indexes.put( md.getColumnLabel( i ).toUpperCase( Locale.ROOT ), i );
+        }
+        List<Column> found = new ArrayList<>( columns.length );
+        List<Integer> foundIndexes = new ArrayList<>( columns.length );
+        for( Column column : columns ) {
+            Integer idx = column.label == null ? null : indexes.get( column.label.toUpperCase( Locale.ROOT ) );
+            if( idx == null ) {
+                System.err.println( "Column " + column.label + " of property " 
+                        + column.propertyRef.getName() + " is absent in the query, it is skipped." );
+            } else {
+                found.add( column );
+                foundIndexes.add( idx );
+            }
+        }
+        return new Binding( this, rs, found, foundIndexes );
+    }
+
+    /**
+     * Plan that is bound to certain {@code ResultSet}.
+     * Result set is weakly referenced and is not kept alive by the binding.
+     */
+    public static final class Binding {
+
+        private final MappingPlan plan;
+        private final WeakReference<ResultSet> rs;
+        private final Column[] columns;
+        private final int[] indexes;
+
+        private Binding( MappingPlan plan, ResultSet rs, List<Column> columns, List<Integer> indexes ) {
+            this.plan = plan;
+            this.rs = new WeakReference<>( rs );
+            this.columns = columns.toArray( new Column[columns.size()] );
+            this.indexes = new int[indexes.size()];
+            for( int i = 0; i < this.indexes.length; i++ )
+                this.indexes[i] = indexes.get( i );
+        }
+
+        public boolean isBoundTo( MappingPlan plan, ResultSet rs ) {
+            return this.plan == plan && this.rs.get() == rs;
+        }
+
+        /**
+         * Fill given instance with values of current row.
+         * Bad columns are skipped.
+         *
+         * @param rs {@code ResultSet} this plan is bound to.
+         * @param result instance to fill.
+         */
+        public void map( ResultSet rs, Object result ) {
+            for( int i = 0; i < columns.length; i++ ) {
+                Column column = columns[i];
+                try {
+                    column.reader.read( rs, indexes[i], result, column.propertyRef );
+                } catch( Exception ex ) {
+                    System.err.println( "Error while handling field: " + column.propertyRef.toString() );
+                    ex.printStackTrace();
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,18 @@
+package data.wrappers;
+
+/**
+ * Determines which implementation of {@code IDBPropertyReference}
+ * is created by {@code DefaultWrapper}.
+ *
+ * @author Belkin Sergei
+ */
+public enum PropertyAccessMode {
+    /**
+     * {@code DBPropertyReference} that calls getters and setters via {@code Method.invoke}.
+     */
+    REFLECTION,
+    /**
+     * {@code DBPropertyReferenceLambda} that calls getters and setters via generated lambdas.
+     */
+    LAMBDA
+}
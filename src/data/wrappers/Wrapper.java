@@ -18,4 +18,11 @@ public interface Wrapper<T, C extends IEntity> {
     boolean hasProperty( String name );
     IDBPropertyReference getPropertyByName( String name );
     IDBPropertyReference getPropertyByFieldName( String fieldName );
+    /**
+     * @param ref property of this wrapper.
+     * @return position of the property in {@code getProperties()}, {@code -1} if it is absent.
+     */
+    default int getPropertyOrdinal( IDBPropertyReference ref ) {
+        return getProperties().indexOf( ref );
+    }
 }
@@ -0,0 +1,61 @@
+package data.wrappers;
+
+import data.entities.IEntity;
+
+/**
+ * Creates wrappers for entity classes.
+ * If a wrapper was generated by {@code PersistedEntityProcessor} for the class
+ * it is used, otherwise reflection based {@code DefaultWrapper} is returned.
+ *
+ * @author Belkin Sergei
+ */
+public final class WrapperFactory {
+
+    private static volatile boolean useGenerated = true;
+
+    private WrapperFactory() {
+    }
+
+    public static boolean isUseGenerated() {
+        return useGenerated;
+    }
+
+    /**
+     * @param useGenerated if {@code false} generated wrappers are ignored.
+     */
+    public static void setUseGenerated( boolean useGenerated ) {
+        WrapperFactory.useGenerated = useGenerated;
+    }
+
+    /**
+     * @param cls entity class.
+     * @return name of the wrapper that is generated for the class.
+     */
+    public static String getGeneratedName( Class<?> cls ) {
+        String name = cls.getName();
+        int dot = name.lastIndexOf( '.' );
+        return name.substring( 0, dot + 1 ) + name.substring( dot + 1 ).replace( '$', '_' ) + "_Wrapper";
+    }
+
+    /**
+     * @param <T> type of rows.
+     * @param <C> class that will be instantiated.
+     * @param cls entity class.
+     * @return generated wrapper or {@code DefaultWrapper}.
+     */
+    public static <T, C extends IEntity> Wrapper<T, C> create( Class<?> cls ) {
+        if( useGenerated ) {
+            try {
+                Class<?> generated = Class.forName( getGeneratedName( cls ), true, cls.getClassLoader() );
+                if( Wrapper.class.isAssignableFrom( generated ) )
+                    return ( Wrapper<T, C> ) generated.newInstance();
+            } catch( ClassNotFoundException ex ) {
+                //there is no generated wrapper
+            } catch( InstantiationException | IllegalAccessException ex ) {
+                ex.printStackTrace();
+            }
+        }
+        return new DefaultWrapper<>();
+    }
+
+}
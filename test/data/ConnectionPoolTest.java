@@ -0,0 +1,128 @@
+package data;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Belkin Sergei
+ */
+public class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+    private final List<boolean[]> physical = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        physical.clear();
+        pool = new ConnectionPool( this::connection );
+        pool.setValidationQuery( null );
+        pool.setMaxSize( 2 );
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    /**
+     * @return fake connection, its closed state is kept in {@code physical}.
+     */
+    private Connection connection() {
+        final boolean[] closed = new boolean[1];
+        physical.add( closed );
+        return ( Connection ) Proxy.newProxyInstance( getClass().getClassLoader(),
+                new Class<?>[] { Connection.class }, ( proxy, method, args ) -> {
+                    switch( method.getName() ) {
+                        case "close":
+                            closed[0] = true;
+                            return null;
+                        case "isClosed":
+                            return closed[0];
+                        case "isValid":
+                        case "getAutoCommit":
+                            return true;
+                        case "hashCode":
+                            return System.identityHashCode( proxy );
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                } );
+    }
+
+    @Test
+    public void testReuse() throws SQLException {
+        Connection con = pool.getConnection();
+        Connection physicalCon = ConnectionPool.getPhysicalConnection( con );
+        assertNotSame( con, physicalCon );
+        con.close();
+        assertTrue( con.isClosed() );
+        con = pool.getConnection();
+        assertSame( physicalCon, ConnectionPool.getPhysicalConnection( con ) );
+        con.close();
+        assertEquals( 1, physical.size() );
+        assertEquals( 2, pool.getBorrowCount() );
+        assertEquals( 1, pool.getIdleCount() );
+    }
+
+    @Test
+    public void testBorrowTimeout() throws SQLException {
+        pool.setBorrowTimeout( 50 );
+        Connection con1 = pool.getConnection();
+        Connection con2 = pool.getConnection();
+        try {
+            pool.getConnection();
+            fail( "Pool is exhausted." );
+        } catch( SQLTimeoutException ex ) {
+            assertEquals( 1, pool.getTimeoutCount() );
+        }
+        con1.close();
+        con2.close();
+    }
+
+    @Test
+    public void testWaitForConnection() throws Exception {
+        pool.setMaxSize( 1 );
+        Connection con = pool.getConnection();
+        Thread t = new Thread( () -> {
+            try {
+                Thread.sleep( 50 );
+                con.close();
+            } catch( InterruptedException | SQLException ex ) {
+                throw new RuntimeException( ex );
+            }
+        } );
+        t.start();
+        pool.getConnection().close();
+        t.join();
+        assertEquals( 1, pool.getWaitCount() );
+        assertEquals( 1, physical.size() );
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception {
+        pool.setMinSize( 1 );
+        pool.setIdleTimeout( 10 );
+        Connection con1 = pool.getConnection();
+        Connection con2 = pool.getConnection();
+        con1.close();
+        con2.close();
+        Thread.sleep( 20 );
+        pool.getConnection().close();
+        assertEquals( 1, pool.getSize() );
+        assertEquals( 1, pool.getDestroyedCount() );
+        pool.close();
+        assertTrue( physical.get( 0 )[0] && physical.get( 1 )[0] );
+    }
+
+}
@@ -3,9 +3,13 @@ package data;
 import data.entities.IEntity;
 import data.entities.IField;
 import data.managers.BasicDAO;
+import data.managers.RowSorter;
+import data.managers.RowSorter.SortKey;
 import data.wrappers.DefaultWrapper;
 import data.wrappers.Wrapper;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.List;
 import javafx.beans.property.Property;
 import javafx.beans.property.SimpleLongProperty;
@@ -257,6 +261,116 @@ public class DataSourceTest {
         System.out.println( "############### TEST PROPERTY LISTENER ###############" );
     }
     
+    private static Doc doc( Long id ) {
+        Doc res = new Doc();
+        res.setId( id );
+        return res;
+    }
+    
+    @Test
+    public void testSortKeepsCurrentRow() throws Exception {
+        DefaultWrapper<IDoc, Doc> wrapper = new DefaultWrapper<>();
+        wrapper.initProperties( Doc.class );
+        BasicDAO<IDoc> dataObject = new BasicDAO<IDoc>() {
+            @Override
+            public Wrapper getWrapper() {
+                return wrapper;
+            }
+            @Override
+            public Class<?> getWrapperClass() {
+                return Doc.class;
+            }
+        };
+        DataSource dataSource = new DataSource();
+        dataSource.setDataObject( dataObject );
+        Doc current = doc( 3L );
+        ObservableList<IDoc> data = dataObject.getData();
+        data.addAll( Arrays.asList( current, doc( 2L ), doc( 1L ) ) );
+        assertSame( current, dataSource.getRowObject().get() );
+        new RowSorter<>( dataObject ).sort( SortKey.ascending( "id" ) ).get();
+        //cursor follows the current row
+        assertEquals( Integer.valueOf( 2 ), dataSource.getCurrentRowIndex() );
+        dataSource.getRowObjectPropertyByName( "id" ).setValue( 30L );
+        dataSource.flushWriteBack();
+        assertSame( current, data.get( 2 ) );
+        assertEquals( Long.valueOf( 1L ), data.get( 0 ).getId() );
+        assertEquals( Long.valueOf( 2L ), data.get( 1 ).getId() );
+        assertEquals( Long.valueOf( 30L ), data.get( 2 ).getId() );
+    }
+    
+    @Test
+    public void testWriteBackFindsRow() {
+        DefaultWrapper<IDoc, Doc> wrapper = new DefaultWrapper<>();
+        wrapper.initProperties( Doc.class );
+        BasicDAO<IDoc> dataObject = new BasicDAO<IDoc>() {
+            @Override
+            public Wrapper getWrapper() {
+                return wrapper;
+            }
+            @Override
+            public Class<?> getWrapperClass() {
+                return Doc.class;
+            }
+        };
+        DataSource dataSource = new DataSource();
+        dataSource.setDataObject( dataObject );
+        Doc current = doc( 1L ), other = doc( 2L );
+        ObservableList<IDoc> data = dataObject.getData();
+        data.add( current );
+        assertSame( current, dataSource.getRowObject().get() );
+        //current row is moved, stale position points to the other row
+        data.add( 0, other );
+        dataSource.getRowObjectPropertyByName( "id" ).setValue( 10L );
+        dataSource.flushWriteBack();
+        assertSame( other, data.get( 0 ) );
+        assertSame( current, data.get( 1 ) );
+        assertEquals( Long.valueOf( 2L ), other.getId() );
+        assertEquals( Long.valueOf( 10L ), current.getId() );
+        assertEquals( Integer.valueOf( 1 ), dataSource.getCurrentRowIndex() );
+        //edits of removed row are dropped
+        data.remove( current );
+        dataSource.getRowObjectPropertyByName( "id" ).setValue( 20L );
+        dataSource.flushWriteBack();
+        assertEquals( Arrays.asList( other ), data );
+        assertEquals( Long.valueOf( 2L ), other.getId() );
+        assertEquals( Long.valueOf( 10L ), current.getId() );
+    }
+    
+    @Test
+    public void testEditLazyRow() {
+        DefaultWrapper<IDoc, Doc> wrapper = new DefaultWrapper<>();
+        wrapper.initProperties( Doc.class );
+        BasicDAO<IDoc> dataObject = new BasicDAO<IDoc>() {
+            @Override
+            public Wrapper getWrapper() {
+                return wrapper;
+            }
+            @Override
+            public Class<?> getWrapperClass() {
+                return Doc.class;
+            }
+        };
+        DataSource dataSource = new DataSource();
+        dataSource.setDataObject( dataObject );
+        Connection con = new FakeConnection( 1L, 2L, 3L ).connect();
+        try {
+            ObservableList<IDoc> data = dataObject.openLazy( 
+                    new BasicQueryObject( "SELECT ID FROM DOCS ORDER BY ID", null, con ), 2, 1 );
+            int[] updates = { 0 };
+            data.addListener( ( ListChangeListener<IDoc> ) c -> {
+                while( c.next() ) if( c.wasUpdated() ) updates[0]++;
+            } );
+            assertEquals( Long.valueOf( 1L ), ( ( IDoc ) dataSource.getRowObject().get() ).getId() );
+            dataSource.getRowObjectPropertyByName( "id" ).setValue( 30L );
+            dataSource.flushWriteBack();
+            assertEquals( 1, updates[0] );
+            assertEquals( Long.valueOf( 30L ), data.get( 0 ).getId() );
+            assertEquals( 1, dataObject.getUpdatedItemsList().size() );
+        } finally {
+            StatementCache.remove( con );
+        }
+    }
+    
     @Test
     public void testGetRowObjectPropertyByName() {
         System.out.println( "############ TEST GET ROW OBJECT PROPERTY BY NAME ############" );
@@ -0,0 +1,130 @@
+package data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Connection without DB for tests.
+ * Count query returns count of rows, other queries return rows with single column {@code ID}.
+ * Query with {@code ROWS ? TO ?} returns rows in given range, its last two parameters
+ * are numbers of the first and the last row.
+ *
+ * @author Belkin Sergei
+ */
+public class FakeConnection {
+
+    private final long[] ids;
+    private int pageLoads;
+
+    public FakeConnection( long... ids ) {
+        this.ids = ids.clone();
+    }
+
+    /**
+     * @return count of executed queries of pages.
+     */
+    public int getPageLoads() {
+        return pageLoads;
+    }
+
+    /**
+     * Change value of the row in "DB".
+     */
+    public void setId( int index, long id ) {
+        ids[index] = id;
+    }
+
+    /**
+     * @return fake of the method result: {@code false}, {@code 0} or {@code null}.
+     */
+    private static Object defaultValue( Class<?> type ) {
+        if( type == boolean.class ) return false;
+        if( type == int.class ) return 0;
+        if( type == long.class ) return 0L;
+        return null;
+    }
+
+    private static <E> E proxy( Class<E> type, InvocationHandler handler ) {
+        return type.cast( Proxy.newProxyInstance( FakeConnection.class.getClassLoader(),
+                new Class<?>[] { type }, handler ) );
+    }
+
+    private ResultSet resultSet( long[] values ) {
+        int[] row = { -1 };
+        ResultSetMetaData md = proxy( ResultSetMetaData.class, ( proxy, method, args ) -> {
+            switch( method.getName() ) {
+                case "getColumnCount":
+                    return 1;
+                case "getColumnLabel":
+                case "getColumnName":
+                    return "ID";
+                default:
+                    return defaultValue( method.getReturnType() );
+            }
+        } );
+        return proxy( ResultSet.class, ( proxy, method, args ) -> {
+            switch( method.getName() ) {
+                case "next":
+                    return ++row[0] < values.length;
+                case "getMetaData":
+                    return md;
+                case "getInt":
+                    return ( int ) values[row[0]];
+                case "getLong":
+                case "getObject":
+                    return values[row[0]];
+                default:
+                    return defaultValue( method.getReturnType() );
+            }
+        } );
+    }
+
+    private PreparedStatement statement( String sql ) {
+        Map<Integer, Object> params = new HashMap<>();
+        return proxy( PreparedStatement.class, ( proxy, method, args ) -> {
+            switch( method.getName() ) {
+                case "setInt":
+                case "setObject":
+                    params.put( ( Integer ) args[0], args[1] );
+                    return null;
+                case "executeQuery":
+                    if( sql.startsWith( "SELECT COUNT" ) )
+                        return resultSet( new long[] { ids.length } );
+                    if( !sql.contains( "ROWS ? TO ?" ) ) return resultSet( ids );
+                    pageLoads++;
+                    int last = params.size();
+                    int from = ( Integer ) params.get( last - 1 ) - 1;
+                    int to = Math.min( ( Integer ) params.get( last ), ids.length );
+                    return resultSet( Arrays.copyOfRange( ids, Math.min( from, to ), to ) );
+                default:
+                    return defaultValue( method.getReturnType() );
+            }
+        } );
+    }
+
+    /**
+     * @return new connection to the rows.
+     */
+    public Connection connect() {
+        return proxy( Connection.class, ( proxy, method, args ) -> {
+            switch( method.getName() ) {
+                case "prepareStatement":
+                    return statement( ( String ) args[0] );
+                case "hashCode":
+                    return System.identityHashCode( proxy );
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return defaultValue( method.getReturnType() );
+            }
+        } );
+    }
+
+}
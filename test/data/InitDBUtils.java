@@ -13,6 +13,7 @@ public class InitDBUtils {
     private static final String MAIN_CON_USER = "SYSDBA";
     private static final String MAIN_CON_PASW = "masterkey";    
     private static Connection mainConnection = null;
+    private static ConnectionPool pool = null;
         
     public static synchronized Connection getConnection() throws SQLException {
         if( mainConnection == null ) {
@@ -21,4 +22,11 @@ public class InitDBUtils {
         return mainConnection;
     }
     
+    public static synchronized ConnectionPool getPool() {
+        if( pool == null ) {
+            pool = FirebirdConnection.createPool( MAIN_CON_URL, MAIN_CON_USER, MAIN_CON_PASW );
+        }
+        return pool;
+    }
+    
 }
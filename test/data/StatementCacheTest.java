@@ -0,0 +1,131 @@
+package data;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Belkin Sergei
+ */
+public class StatementCacheTest {
+
+    private Connection con;
+    private int prepared;
+    private final Set<Object> closed = new HashSet<>();
+
+    @Before
+    public void setUp() {
+        prepared = 0;
+        closed.clear();
+        con = ( Connection ) Proxy.newProxyInstance( getClass().getClassLoader(),
+                new Class<?>[] { Connection.class }, ( proxy, method, args ) -> {
+                    switch( method.getName() ) {
+                        case "prepareStatement":
+                            prepared++;
+                            return statement();
+                        case "isClosed":
+                            return false;
+                        case "hashCode":
+                            return System.identityHashCode( proxy );
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                } );
+    }
+
+    @After
+    public void tearDown() {
+        StatementCache.remove( con );
+    }
+
+    private PreparedStatement statement() {
+        return ( PreparedStatement ) Proxy.newProxyInstance( getClass().getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, ( proxy, method, args ) -> {
+                    switch( method.getName() ) {
+                        case "close":
+                            closed.add( proxy );
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode( proxy );
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                } );
+    }
+
+    @Test
+    public void testReuse() throws SQLException {
+        StatementCache cache = StatementCache.forConnection( con );
+        assertSame( cache, StatementCache.forConnection( con ) );
+        PreparedStatement ps = cache.prepare( "SELECT 1 FROM RDB$DATABASE" );
+        cache.release( ps );
+        assertSame( ps, cache.prepare( "SELECT 1 FROM RDB$DATABASE" ) );
+        cache.release( ps );
+        assertEquals( 1, prepared );
+        assertEquals( 1, cache.getHitCount() );
+        assertEquals( 1, cache.getMissCount() );
+        assertTrue( closed.isEmpty() );
+    }
+
+    @Test
+    public void testBorrowedIsNotShared() throws SQLException {
+        StatementCache cache = StatementCache.forConnection( con );
+        PreparedStatement ps1 = cache.prepare( "SELECT 1 FROM RDB$DATABASE" );
+        PreparedStatement ps2 = cache.prepare( "SELECT 1 FROM RDB$DATABASE" );
+        assertNotSame( ps1, ps2 );
+        cache.release( ps2 );
+        cache.release( ps1 );
+        //uncached statement is closed
+        assertTrue( closed.contains( ps2 ) );
+        assertFalse( closed.contains( ps1 ) );
+        assertEquals( 1, cache.size() );
+    }
+
+    @Test
+    public void testReleasedProviderConnection() throws SQLException {
+        QueryObject query = new BasicQueryObject( "SELECT 1 FROM RDB$DATABASE", null, () -> con );
+        Connection acquired = ConnectionProvider.acquire( query );
+        StatementCache cache = StatementCache.forConnection( acquired );
+        cache.release( cache.prepare( "SELECT 1 FROM RDB$DATABASE" ) );
+        ConnectionProvider.release( query, acquired );
+        //statements are closed and the cache is forgotten
+        assertEquals( 0, cache.size() );
+        assertEquals( 1, closed.size() );
+        assertNotSame( cache, StatementCache.forConnection( con ) );
+    }
+
+    @Test
+    public void testEviction() throws SQLException {
+        StatementCache cache = StatementCache.forConnection( con );
+        cache.setMaxSize( 2 );
+        PreparedStatement ps1 = cache.prepare( "SELECT 1 FROM RDB$DATABASE" );
+        cache.release( ps1 );
+        PreparedStatement ps2 = cache.prepare( "SELECT 2 FROM RDB$DATABASE" );
+        cache.release( ps2 );
+        //first statement becomes the most recently used
+        cache.release( cache.prepare( "SELECT 1 FROM RDB$DATABASE" ) );
+        PreparedStatement ps3 = cache.prepare( "SELECT 3 FROM RDB$DATABASE" );
+        assertTrue( closed.contains( ps2 ) );
+        assertFalse( closed.contains( ps1 ) );
+        //evicted while borrowed
+        cache.setMaxSize( 0 );
+        assertTrue( closed.contains( ps1 ) );
+        assertFalse( closed.contains( ps3 ) );
+        cache.release( ps3 );
+        assertTrue( closed.contains( ps3 ) );
+        assertEquals( 0, cache.size() );
+    }
+
+}
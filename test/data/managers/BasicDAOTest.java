@@ -0,0 +1,435 @@
+package data.managers;
+
+import data.BasicQueryObject;
+import data.FakeConnection;
+import data.StatementCache;
+import data.entities.IEntity;
+import data.entities.IField;
+import data.wrappers.DefaultWrapper;
+import data.wrappers.IDBPropertyReference;
+import data.wrappers.Wrapper;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Belkin Sergei
+ */
+public class BasicDAOTest {
+    
+    private BasicDAO<Row> dataObject;
+    private ObservableList<Row> data;
+    
+    public static class Row implements IEntity {
+        
+        private Long id;
+
+        public Row() {
+        }
+
+        public Row( Long id ) {
+            this.id = id;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId( Long id ) {
+            this.id = id;
+        }
+        
+        @Override
+        public boolean equals( Object obj ) {
+            return obj instanceof Row && Objects.equals( ( ( Row ) obj ).id, id );
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode( id );
+        }
+
+        @Override
+        public String toString() {
+            return "Row{" + "id=" + id + '}';
+        }
+
+        @Override
+        public IField[] getFieldNames() {
+            return new IField[] { 
+                new IField() {
+                    @Override
+                    public String getDBFieldName() {
+                        return "ID";
+                    }
+                    @Override
+                    public String toString() {
+                        return "FIELD_NAME_ID";
+                    }
+                }
+            };
+        }
+
+        @Override
+        public String getTableName() {
+            return "ROWS_TABLE";
+        }
+        
+    }
+    
+    @Before
+    public void setUp() throws SQLException {
+        DefaultWrapper<Row, Row> wrapper = new DefaultWrapper<>();
+        wrapper.initProperties( Row.class );
+        dataObject = new BasicDAO<Row>() {
+            @Override
+            public Wrapper getWrapper() {
+                return wrapper;
+            }
+            @Override
+            public Class<?> getWrapperClass() {
+                return Row.class;
+            }
+        };
+        //without query it publishes empty list
+        data = dataObject.open( ( data.QueryObject ) null );
+    }
+    
+    @Test
+    public void testTrackAdded() {
+        Row r1 = new Row( 1L ), r2 = new Row( 2L );
+        data.addAll( r1, r2 );
+        assertEquals( 2, dataObject.getAddedItemsList().size() );
+        data.remove( r1 );
+        assertEquals( 1, dataObject.getAddedItemsList().size() );
+        assertSame( r2, dataObject.getAddedItemsList().get( 0 ) );
+        assertTrue( dataObject.getRemovedItemsList().isEmpty() );
+        //replacing of new item keeps it new
+        Row r3 = new Row( 3L );
+        data.set( 0, r3 );
+        assertSame( r3, dataObject.getAddedItemsList().get( 0 ) );
+        assertTrue( dataObject.getUpdatedItemsList().isEmpty() );
+    }
+    
+    @Test
+    public void testLiveLists() {
+        List<Row> added = dataObject.getAddedItemsList();
+        assertSame( added, dataObject.getAddedItemsList() );
+        assertTrue( added.isEmpty() );
+        Row r1 = new Row( 1L );
+        data.add( r1 );
+        assertEquals( 1, added.size() );
+        assertSame( r1, added.get( 0 ) );
+        try {
+            added.clear();
+            fail( "View is read only." );
+        } catch( UnsupportedOperationException ex ) {
+        }
+        data.remove( r1 );
+        assertTrue( added.isEmpty() );
+    }
+    
+    @Test
+    public void testReplaceAfterEdit() {
+        Row r1 = new Row( 1L );
+        data = dataObject.publish( new ArrayList<>( Arrays.asList( r1 ) ) );
+        IDBPropertyReference ref = dataObject.getWrapper().getPropertyByName( "id" );
+        dataObject.setPropertyValue( 0, ref, 5L );
+        Row r2 = new Row( 5L );
+        data.set( 0, r2 );
+        BasicDAO.Pair<Row> pair = dataObject.getUpdatedItemsList().get( 0 );
+        assertSame( r1, pair.getInitValue() );
+        assertSame( r2, pair.getLastValue() );
+        assertTrue( pair.isDirty( 0 ) );
+        assertEquals( 1L, pair.getInitFieldValue( 0, ref ) );
+        SQLCommitter<Row> committer = new SQLCommitter<>( dataObject.getWrapper(), Row.class, null );
+        assertEquals( Arrays.asList( ref ), committer.getChangedProperties( pair, Arrays.asList( ref ) ) );
+        //edits of the replacing row keep values read from DB
+        dataObject.setPropertyValue( 0, ref, 1L );
+        assertTrue( pair.isDirty( 0 ) );
+        assertEquals( 1L, pair.getInitFieldValue( 0, ref ) );
+        dataObject.cancel();
+        assertSame( r1, data.get( 0 ) );
+        assertEquals( Long.valueOf( 1L ), r1.getId() );
+    }
+    
+    @Test
+    public void testTrackByIdentity() {
+        Row r1 = new Row( 1L ), r2 = new Row( 1L );
+        data.addAll( r1, r2 );
+        //equal but not the same items
+        data.remove( 1 );
+        assertEquals( 1, dataObject.getAddedItemsList().size() );
+        assertSame( r1, dataObject.getAddedItemsList().get( 0 ) );
+    }
+    
+    @Test
+    public void testBulkChanges() {
+        final int count = 50000;
+        Row[] rows = new Row[count];
+        for( int i = 0; i < count; i++ ) rows[i] = new Row( ( long ) i );
+        data.addAll( rows );
+        assertEquals( count, dataObject.getAddedItemsList().size() );
+        data.clear();
+        assertTrue( dataObject.getAddedItemsList().isEmpty() );
+        assertTrue( dataObject.getRemovedItemsList().isEmpty() );
+    }
+    
+    @Test
+    public void testCancelRestoresOrder() {
+        Row r1 = new Row( 1L ), r2 = new Row( 2L ), r3 = new Row( 3L ), r4 = new Row( 4L );
+        //rows published by opening are not tracked
+        data = dataObject.publish( new ArrayList<>( Arrays.asList( r1, r2, r3 ) ) );
+        data.remove( r1 );
+        data.set( 1, r4 );
+        data.add( 0, new Row( 5L ) );
+        int[] changes = { 0 };
+        data.addListener( ( ListChangeListener<Row> ) c -> changes[0]++ );
+        dataObject.cancel();
+        assertEquals( 1, changes[0] );
+        assertEquals( 3, data.size() );
+        assertSame( r1, data.get( 0 ) );
+        assertSame( r2, data.get( 1 ) );
+        assertSame( r3, data.get( 2 ) );
+        assertTrue( dataObject.getAddedItemsList().isEmpty() );
+        assertTrue( dataObject.getUpdatedItemsList().isEmpty() );
+        assertTrue( dataObject.getRemovedItemsList().isEmpty() );
+    }
+    
+    @Test
+    public void testDirtyFields() {
+        Row r1 = new Row( 1L );
+        data = dataObject.publish( new ArrayList<>( Arrays.asList( r1 ) ) );
+        IDBPropertyReference ref = dataObject.getWrapper().getPropertyByName( "id" );
+        assertTrue( dataObject.getDirtyFields( r1 ).isEmpty() );
+        assertTrue( dataObject.setPropertyValue( 0, ref, 5L ) );
+        assertFalse( dataObject.setPropertyValue( 0, ref, 5L ) );
+        assertTrue( dataObject.getDirtyFields( r1 ).get( 0 ) );
+        assertEquals( 1, dataObject.getUpdatedItemsList().size() );
+        //initial value came back
+        dataObject.setPropertyValue( 0, ref, 1L );
+        assertTrue( dataObject.getDirtyFields( r1 ).isEmpty() );
+        assertTrue( dataObject.getUpdatedItemsList().isEmpty() );
+        dataObject.setPropertyValue( 0, ref, 7L );
+        dataObject.cancel();
+        assertEquals( Long.valueOf( 1L ), r1.getId() );
+    }
+    
+    @Test
+    public void testCopyOnWrite() throws SQLException {
+        Row r1 = new Row( 1L ), r2 = new Row( 2L );
+        QueryResultCache cache = new QueryResultCache();
+        BasicQueryObject query = new BasicQueryObject( "SELECT ID FROM ROWS_TABLE", null, ( Connection ) null );
+        cache.put( new QueryResultCache.Key( null, Row.class, query.getSelectText(), null ), 
+                Arrays.asList( r1, r2 ), "ROWS_TABLE" );
+        dataObject.setResultCache( cache );
+        dataObject.setCopyOnWrite( true );
+        data = dataObject.open( query );
+        assertSame( r1, data.get( 0 ) );
+        assertTrue( dataObject.isShared( r1 ) );
+        
+        IDBPropertyReference ref = dataObject.getWrapper().getPropertyByName( "id" );
+        assertTrue( dataObject.setPropertyValue( 0, ref, 5L ) );
+        //shared row is untouched, its copy is tracked as update
+        assertEquals( Long.valueOf( 1L ), r1.getId() );
+        assertNotSame( r1, data.get( 0 ) );
+        assertEquals( Long.valueOf( 5L ), data.get( 0 ).getId() );
+        assertFalse( dataObject.isShared( data.get( 0 ) ) );
+        assertEquals( 1, dataObject.getUpdatedItemsList().size() );
+        assertSame( r1, dataObject.getUpdatedItemsList().get( 0 ).getInitValue() );
+        //copy is changed in place
+        Row copy = data.get( 0 );
+        dataObject.setPropertyValue( 0, ref, 6L );
+        assertSame( copy, data.get( 0 ) );
+        assertEquals( 1, cache.size() );
+        
+        dataObject.cancel();
+        assertSame( r1, data.get( 0 ) );
+        assertEquals( Long.valueOf( 1L ), r1.getId() );
+    }
+    
+    @Test
+    public void testCachedRowsCopied() throws SQLException {
+        Row r1 = new Row( 1L );
+        Connection con = emptyConnection(), other = emptyConnection();
+        QueryResultCache cache = new QueryResultCache();
+        String sql = "SELECT ID FROM ROWS_TABLE";
+        cache.put( new QueryResultCache.Key( con, Row.class, sql, null ), Arrays.asList( r1 ), "ROWS_TABLE" );
+        dataObject.setResultCache( cache );
+        try {
+            data = dataObject.open( new BasicQueryObject( sql, null, con ) );
+            assertEquals( 1, cache.getHitCount() );
+            //without copy-on-write DAO gets its own rows
+            assertNotSame( r1, data.get( 0 ) );
+            assertFalse( dataObject.isShared( data.get( 0 ) ) );
+            IDBPropertyReference ref = dataObject.getWrapper().getPropertyByName( "id" );
+            dataObject.setPropertyValue( 0, ref, 5L );
+            assertEquals( Long.valueOf( 1L ), r1.getId() );
+            assertEquals( 1, cache.size() );
+            //result of another database is not taken
+            data = dataObject.open( new BasicQueryObject( sql, null, other ) );
+            assertTrue( data.isEmpty() );
+            assertEquals( 1, cache.getMissCount() );
+        } finally {
+            StatementCache.remove( other );
+        }
+    }
+    
+    @Test
+    public void testFailedRollbackKeepsCause() {
+        SQLException cause = new SQLException( "Insert failed." ), rollback = new SQLException( "Rollback failed." );
+        Connection con = ( Connection ) Proxy.newProxyInstance( getClass().getClassLoader(),
+                new Class<?>[] { Connection.class }, ( proxy, method, args ) -> {
+                    switch( method.getName() ) {
+                        case "prepareStatement":
+                            throw cause;
+                        case "rollback":
+                            throw rollback;
+                        case "hashCode":
+                            return System.identityHashCode( proxy );
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return defaultValue( method.getReturnType() );
+                    }
+                } );
+        SQLCommitter<Row> committer = new SQLCommitter<>( dataObject.getWrapper(), Row.class, null );
+        try {
+            committer.commit( con, Arrays.asList( new Row( 1L ) ), new ArrayList<>(), new ArrayList<>() );
+            fail( "Insert failed." );
+        } catch( SQLException ex ) {
+            assertSame( cause, ex );
+            assertSame( rollback, ex.getSuppressed()[0] );
+        } finally {
+            StatementCache.remove( con );
+        }
+    }
+    
+    /**
+     * @return fake connection, its queries return no rows.
+     */
+    private Connection emptyConnection() {
+        return ( Connection ) Proxy.newProxyInstance( getClass().getClassLoader(),
+                new Class<?>[] { Connection.class }, ( proxy, method, args ) -> {
+                    switch( method.getName() ) {
+                        case "prepareStatement":
+                            return Proxy.newProxyInstance( getClass().getClassLoader(),
+                                    new Class<?>[] { PreparedStatement.class }, ( ps, m, a ) -> 
+                                            m.getName().equals( "executeQuery" ) 
+                                                    ? Proxy.newProxyInstance( getClass().getClassLoader(),
+                                                            new Class<?>[] { ResultSet.class }, 
+                                                            ( rs, rm, ra ) -> defaultValue( rm.getReturnType() ) )
+                                                    : defaultValue( m.getReturnType() ) );
+                        case "hashCode":
+                            return System.identityHashCode( proxy );
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return defaultValue( method.getReturnType() );
+                    }
+                } );
+    }
+    
+    /**
+     * @return fake of the method result: {@code false}, {@code 0} or {@code null}.
+     */
+    private static Object defaultValue( Class<?> type ) {
+        if( type == boolean.class ) return false;
+        if( type == int.class ) return 0;
+        return null;
+    }
+    
+    @Test
+    public void testLazyRefreshNotTracked() {
+        int[] pageLoads = { 0 };
+        Connection con = ( Connection ) Proxy.newProxyInstance( getClass().getClassLoader(),
+                new Class<?>[] { Connection.class }, ( proxy, method, args ) -> {
+                    switch( method.getName() ) {
+                        case "prepareStatement":
+                            String sql = ( String ) args[0];
+                            boolean count = sql.startsWith( "SELECT COUNT" );
+                            return Proxy.newProxyInstance( getClass().getClassLoader(),
+                                    new Class<?>[] { PreparedStatement.class }, ( ps, m, a ) -> {
+                                        if( !m.getName().equals( "executeQuery" ) ) 
+                                            return defaultValue( m.getReturnType() );
+                                        if( !count ) pageLoads[0]++;
+                                        boolean[] read = { false };
+                                        return Proxy.newProxyInstance( getClass().getClassLoader(),
+                                                new Class<?>[] { ResultSet.class }, ( rs, rm, ra ) -> {
+                                                    switch( rm.getName() ) {
+                                                        case "next":
+                                                            boolean res = count && !read[0];
+                                                            read[0] = true;
+                                                            return res;
+                                                        case "getInt":
+                                                            return 3;
+                                                        default:
+                                                            return defaultValue( rm.getReturnType() );
+                                                    }
+                                                } );
+                                    } );
+                        case "hashCode":
+                            return System.identityHashCode( proxy );
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return defaultValue( method.getReturnType() );
+                    }
+                } );
+        try {
+            LazyObservableList<Row> lazy = dataObject.openLazy( 
+                    new BasicQueryObject( "SELECT ID FROM ROWS_TABLE", null, con ), 10, 2 );
+            assertEquals( 3, lazy.size() );
+            lazy.refresh();
+            assertEquals( 0, pageLoads[0] );
+            assertTrue( dataObject.getAddedItemsList().isEmpty() );
+            assertTrue( dataObject.getRemovedItemsList().isEmpty() );
+            assertTrue( dataObject.getUpdatedItemsList().isEmpty() );
+            dataObject.cancel();
+        } finally {
+            StatementCache.remove( con );
+        }
+    }
+    
+    @Test
+    public void testLazyEditedPagePinned() {
+        FakeConnection db = new FakeConnection( 1L, 2L, 3L, 4L, 5L, 6L );
+        Connection con = db.connect();
+        try {
+            LazyObservableList<Row> lazy = dataObject.openLazy( 
+                    new BasicQueryObject( "SELECT ID FROM ROWS_TABLE ORDER BY ID", null, con ), 2, 1 );
+            IDBPropertyReference ref = dataObject.getWrapper().getPropertyByName( "id" );
+            Row edited = lazy.get( 0 );
+            dataObject.setPropertyValue( 0, ref, 100L );
+            //other pages don't evict the page of the edited row
+            lazy.get( 2 );
+            lazy.get( 4 );
+            assertSame( edited, lazy.get( 0 ) );
+            assertEquals( Long.valueOf( 100L ), lazy.get( 0 ).getId() );
+            assertSame( edited, dataObject.getUpdatedItemsList().get( 0 ).getLastValue() );
+            int loads = db.getPageLoads();
+            dataObject.cancel();
+            assertEquals( Long.valueOf( 1L ), edited.getId() );
+            assertTrue( dataObject.getUpdatedItemsList().isEmpty() );
+            //page is evicted after cancel
+            lazy.get( 2 );
+            lazy.get( 0 );
+            assertEquals( loads + 2, db.getPageLoads() );
+        } finally {
+            StatementCache.remove( con );
+        }
+    }
+    
+}
@@ -0,0 +1,84 @@
+package data.managers;
+
+import data.managers.BasicDAOTest.Row;
+import data.wrappers.DefaultWrapper;
+import data.wrappers.IDBPropertyReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Belkin Sergei
+ */
+public class HashIndexTest {
+    
+    private IDBPropertyReference idRef;
+    private ObservableRowList<Row> list;
+    private HashIndex<Row> index;
+    
+    @Before
+    public void setUp() {
+        DefaultWrapper<Row, Row> wrapper = new DefaultWrapper<>();
+        wrapper.initProperties( Row.class );
+        idRef = wrapper.getPropertyByName( "id" );
+        list = new ObservableRowList<>( new ArrayList<>( Arrays.asList( 
+                new Row( 1L ), new Row( 2L ), new Row( 3L ) ) ) );
+        index = new HashIndex<>( idRef );
+        index.attach( list );
+    }
+
+    @Test
+    public void testIndexOf() {
+        assertEquals( 1, index.indexOf( 2L ) );
+        assertEquals( -1, index.indexOf( 5L ) );
+        //shift
+        list.add( 0, new Row( 5L ) );
+        assertEquals( 0, index.indexOf( 5L ) );
+        assertEquals( 2, index.indexOf( 2L ) );
+        list.remove( 0 );
+        assertEquals( -1, index.indexOf( 5L ) );
+        assertEquals( 1, index.indexOf( 2L ) );
+        //append and replace
+        list.add( new Row( 2L ) );
+        list.set( 1, new Row( 7L ) );
+        assertEquals( 1, index.indexOf( 7L ) );
+        assertEquals( 3, index.indexOf( 2L ) );
+        assertEquals( 2, index.get( 2L ).size() + index.get( 7L ).size() );
+    }
+    
+    @Test
+    public void testUpdated() {
+        Row row = list.get( 2 );
+        idRef.set( row, 9L );
+        list.notifyUpdated( 2 );
+        assertEquals( 2, index.indexOf( 9L ) );
+        assertFalse( index.contains( 3L ) );
+    }
+    
+    @Test
+    public void testReplaceByPresentRow() {
+        Row row = list.get( 2 );
+        assertEquals( 2, index.indexOf( 3L ) );
+        //the same row occurs twice, the first occurence is found
+        list.set( 0, row );
+        assertEquals( 0, index.indexOf( 3L ) );
+        list.set( 0, new Row( 1L ) );
+        assertEquals( 2, index.indexOf( 3L ) );
+        assertEquals( 0, index.indexOf( 1L ) );
+    }
+    
+    @Test
+    public void testDuplicateKeys() {
+        list.add( 0, new Row( 3L ) );
+        assertEquals( 0, index.indexOf( 3L ) );
+        list.remove( 0 );
+        assertEquals( 2, index.indexOf( 3L ) );
+        assertEquals( 1, index.get( 3L ).size() );
+        list.clear();
+        assertEquals( 0, index.size() );
+    }
+    
+}
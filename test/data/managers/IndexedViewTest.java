@@ -0,0 +1,196 @@
+package data.managers;
+
+import data.managers.BasicDAOTest.Row;
+import data.wrappers.DefaultWrapper;
+import data.wrappers.IDBPropertyReference;
+import data.wrappers.Wrapper;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Belkin Sergei
+ */
+public class IndexedViewTest {
+
+    private BasicDAO<Row> dataObject;
+    private ObservableList<Row> data;
+    private Row[] rows;
+
+    @Before
+    public void setUp() throws SQLException {
+        DefaultWrapper<Row, Row> wrapper = new DefaultWrapper<>();
+        wrapper.initProperties( Row.class );
+        dataObject = new BasicDAO<Row>() {
+            @Override
+            public Wrapper getWrapper() {
+                return wrapper;
+            }
+            @Override
+            public Class<?> getWrapperClass() {
+                return Row.class;
+            }
+        };
+        rows = new Row[10];
+        for( int i = 0; i < rows.length; i++ ) rows[i] = new Row( ( long ) i );
+        data = dataObject.publish( new ArrayList<>( Arrays.asList( rows ) ) );
+    }
+
+    @Test
+    public void testRange() {
+        dataObject.createSortedIndex( "id" );
+        IndexedView<Row> view = dataObject.createIndexedView();
+        assertEquals( 10, view.size() );
+        view.setRange( "id", 3L, true, 6L, false );
+        assertEquals( Arrays.asList( rows[3], rows[4], rows[5] ), view );
+        int[] changes = { 0 };
+        view.addListener( ( ListChangeListener<Row> ) c -> changes[0]++ );
+        Row r = new Row( 4L );
+        data.add( 0, r );
+        assertEquals( 1, changes[0] );
+        assertEquals( Arrays.asList( rows[3], rows[4], r, rows[5] ), view );
+        data.remove( rows[3] );
+        assertEquals( 3, view.size() );
+        //changes out of the range don't touch the view
+        data.remove( rows[9] );
+        assertEquals( 2, changes[0] );
+        view.setPredicate( ( row ) -> row != r );
+        assertEquals( Arrays.asList( rows[4], rows[5] ), view );
+    }
+
+    @Test
+    public void testEditAndCancel() {
+        dataObject.createHashIndex( "id" );
+        IndexedView<Row> view = dataObject.createIndexedView();
+        view.setEquals( "id", 7L );
+        assertEquals( Arrays.asList( rows[7] ), view );
+        IDBPropertyReference ref = dataObject.getWrapper().getPropertyByName( "id" );
+        dataObject.setPropertyValue( 2, ref, 7L );
+        assertEquals( Arrays.asList( rows[7], rows[2] ), view );
+        dataObject.setPropertyValue( 7, ref, 8L );
+        assertEquals( Arrays.asList( rows[2] ), view );
+        assertEquals( 2, dataObject.getHashIndex( "id" ).get( 8L ).size() );
+        dataObject.cancel();
+        assertEquals( Arrays.asList( rows[7] ), view );
+        assertEquals( 1, dataObject.getHashIndex( "id" ).get( 8L ).size() );
+    }
+
+    /**
+     * Apply changes of the view to its copy.
+     */
+    private static <E> void apply( List<E> copy, ListChangeListener.Change<? extends E> c ) {
+        while( c.next() ) {
+            if( c.wasPermutated() ) {
+                List<E> old = new ArrayList<>( copy.subList( c.getFrom(), c.getTo() ) );
+                for( int i = c.getFrom(); i < c.getTo(); i++ )
+                    copy.set( c.getPermutation( i ), old.get( i - c.getFrom() ) );
+            } else if( !c.wasUpdated() ) {
+                copy.subList( c.getFrom(), c.getFrom() + c.getRemovedSize() ).clear();
+                copy.addAll( c.getFrom(), c.getAddedSubList() );
+            }
+        }
+    }
+
+    private static <E> List<E> filter( List<E> rows, Predicate<E> predicate ) {
+        List<E> res = new ArrayList<>();
+        for( E row : rows ) {
+            if( predicate.test( row ) ) res.add( row );
+        }
+        return res;
+    }
+
+    @Test
+    public void testIncremental() {
+        HashIndex<Row> hash = dataObject.createHashIndex( "id" );
+        SortedIndex<Row> sorted = dataObject.createSortedIndex( "id" );
+        IndexedView<Row> equal = dataObject.createIndexedView();
+        equal.setEquals( "id", 3L );
+        IndexedView<Row> range = dataObject.createIndexedView();
+        range.setRange( "id", 2L, true, 7L, false );
+        range.setPredicate( ( row ) -> row.getId() % 2 == 0 );
+        IndexedView<Row> all = dataObject.createIndexedView();
+        all.setPredicate( ( row ) -> row.getId() != null && row.getId() < 5 );
+        List<Row> equalCopy = new ArrayList<>( equal ), rangeCopy = new ArrayList<>( range ),
+                allCopy = new ArrayList<>( all );
+        int[] moved = { 0 };
+        equal.addListener( ( ListChangeListener<Row> ) c -> apply( equalCopy, c ) );
+        range.addListener( ( ListChangeListener<Row> ) c -> apply( rangeCopy, c ) );
+        all.addListener( ( ListChangeListener<Row> ) c -> {
+            while( c.next() ) moved[0] += c.getRemovedSize() + c.getAddedSize();
+            c.reset();
+            apply( allCopy, c );
+        } );
+        IDBPropertyReference ref = dataObject.getWrapper().getPropertyByName( "id" );
+        Random random = new Random( 1 );
+        for( int step = 0; step < 3000; step++ ) {
+            Long value = random.nextInt( 20 ) == 0 ? null : ( long ) random.nextInt( 10 );
+            int pos = data.isEmpty() ? 0 : random.nextInt( data.size() );
+            switch( data.size() < 5 ? 0 : random.nextInt( 6 ) ) {
+                case 0:
+                    data.add( pos, new Row( value ) );
+                    break;
+                case 1:
+                    data.remove( pos );
+                    break;
+                case 2:
+                    dataObject.setPropertyValue( pos, ref, value );
+                    break;
+                case 3:
+                    //duplicate of a row
+                    data.add( data.get( random.nextInt( data.size() ) ) );
+                    break;
+                case 4:
+                    data.set( pos, new Row( value ) );
+                    break;
+                default:
+                    List<Integer> order = new ArrayList<>();
+                    for( int i = 0; i < data.size(); i++ ) order.add( i );
+                    Collections.shuffle( order, random );
+                    ( ( ObservableRowList<Row> ) data ).permute( order.stream().mapToInt( i -> i ).toArray() );
+            }
+            assertEquals( hash.get( 3L ), equal );
+            assertEquals( filter( sorted.range( 2L, true, 7L, false ), ( row ) -> row.getId() % 2 == 0 ), range );
+            assertEquals( filter( data, ( row ) -> row.getId() != null && row.getId() < 5 ), all );
+            assertEquals( equal, equalCopy );
+            assertEquals( range, rangeCopy );
+            assertEquals( all, allCopy );
+        }
+        //single row moves, the view is not replaced
+        moved[0] = 0;
+        int pos = data.indexOf( all.get( 0 ) );
+        dataObject.setPropertyValue( pos, ref, 9L );
+        data.add( new Row( 1L ) );
+        assertEquals( 2, moved[0] );
+    }
+
+    @Test
+    public void testReopen() {
+        dataObject.createSortedIndex( "id" );
+        IndexedView<Row> view = dataObject.createIndexedView();
+        view.setRange( "id", null, false, 2L, true );
+        assertEquals( 3, view.size() );
+        Row r = new Row( 1L );
+        dataObject.publish( new ArrayList<>( Arrays.asList( r, new Row( 5L ) ) ) );
+        assertEquals( Arrays.asList( r ), view );
+        SortedIndex<Row> index = dataObject.getSortedIndex( "id" );
+        assertEquals( 1L, index.getMin() );
+        assertEquals( 5L, index.getMax() );
+        dataObject.dropSortedIndex( "id" );
+        try {
+            view.setRange( "id", 1L, true, 2L, true );
+            fail( "Index was dropped." );
+        } catch( IllegalStateException ex ) {
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package data.managers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javafx.collections.ListChangeListener;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Belkin Sergei
+ */
+public class ObservableRowListTest {
+    
+    private ObservableRowList<String> list;
+    private final List<String> changes = new ArrayList<>();
+    
+    @Before
+    public void setUp() {
+        list = new ObservableRowList<>( new ArrayList<>( Arrays.asList( "a", "b", "c" ) ) );
+        changes.clear();
+        list.addListener( ( ListChangeListener.Change<? extends String> c ) -> {
+            while( c.next() ) {
+                if( c.wasUpdated() ) {
+                    changes.add( "updated " + c.getFrom() + ".." + c.getTo() );
+                } else if( c.wasReplaced() ) {
+                    changes.add( "replaced " + c.getRemoved() + " by " + c.getAddedSubList() );
+                } else if( c.wasAdded() ) {
+                    changes.add( "added " + c.getAddedSubList() );
+                } else if( c.wasRemoved() ) {
+                    changes.add( "removed " + c.getRemoved() );
+                }
+            }
+        } );
+    }
+
+    @Test
+    public void testNotifyUpdated() {
+        list.notifyUpdated( 1 );
+        assertEquals( Arrays.asList( "updated 1..2" ), changes );
+    }
+    
+    @Test
+    public void testBulkChanges() {
+        list.addAll( Arrays.asList( "d", "e" ) );
+        list.remove( 1, 3 );
+        list.setAll( Arrays.asList( "x", "y" ) );
+        list.clear();
+        assertEquals( Arrays.asList( "added [d, e]", "removed [b, c]", 
+                "replaced [a, d, e] by [x, y]", "removed [x, y]" ), changes );
+        assertTrue( list.isEmpty() );
+    }
+    
+}
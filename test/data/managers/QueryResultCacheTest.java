@@ -0,0 +1,76 @@
+package data.managers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Belkin Sergei
+ */
+public class QueryResultCacheTest {
+    
+    private static final String QUERY_TEXT = "SELECT * FROM CLIENTS WHERE ID = ?";
+    private QueryResultCache cache;
+    
+    @Before
+    public void setUp() {
+        cache = new QueryResultCache();
+    }
+    
+    private static QueryResultCache.Key key( Object... params ) {
+        return new QueryResultCache.Key( null, String.class, QUERY_TEXT, params );
+    }
+
+    @Test
+    public void testKeyByParameters() {
+        cache.put( key( 1 ), Arrays.asList( "a" ), "CLIENTS" );
+        assertEquals( Arrays.asList( "a" ), cache.get( key( 1 ) ) );
+        assertNull( cache.get( key( 2 ) ) );
+        assertNull( cache.get( new QueryResultCache.Key( null, Integer.class, QUERY_TEXT, new Object[] { 1 } ) ) );
+        //the same query against another database
+        assertNull( cache.get( new QueryResultCache.Key( new Object(), String.class, QUERY_TEXT, new Object[] { 1 } ) ) );
+        assertEquals( 1, cache.getHitCount() );
+        assertEquals( 3, cache.getMissCount() );
+    }
+    
+    @Test
+    public void testInvalidate() {
+        cache.put( key( 1 ), Arrays.asList( "a" ), "CLIENTS" );
+        cache.put( key( 2 ), Arrays.asList( "b" ), "ORDERS", "clients" );
+        cache.put( key( 3 ), Arrays.asList( "c" ), "ORDERS" );
+        assertEquals( 2, cache.invalidate( "Clients" ) );
+        assertNull( cache.get( key( 1 ) ) );
+        assertNull( cache.get( key( 2 ) ) );
+        assertNotNull( cache.get( key( 3 ) ) );
+    }
+    
+    @Test
+    public void testEviction() throws InterruptedException {
+        cache.setMaxSize( 2 );
+        cache.put( key( 1 ), Arrays.asList( "a" ), "CLIENTS" );
+        cache.put( key( 2 ), Arrays.asList( "b" ), "CLIENTS" );
+        //first result becomes the most recently used
+        cache.get( key( 1 ) );
+        cache.put( key( 3 ), Arrays.asList( "c" ), "CLIENTS" );
+        assertNull( cache.get( key( 2 ) ) );
+        assertNotNull( cache.get( key( 1 ) ) );
+        
+        cache.setTimeToLive( 10 );
+        Thread.sleep( 20 );
+        assertNull( cache.get( key( 1 ) ) );
+        assertEquals( 2, cache.getEvictionCount() );
+    }
+    
+    @Test
+    public void testResultIsCopied() {
+        List<String> rows = new ArrayList<>( Arrays.asList( "a" ) );
+        cache.put( key( 1 ), rows, "CLIENTS" );
+        rows.add( "b" );
+        assertEquals( 1, cache.get( key( 1 ) ).size() );
+    }
+    
+}
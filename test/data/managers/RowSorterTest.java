@@ -0,0 +1,199 @@
+package data.managers;
+
+import annotations.PersistedEntity;
+import annotations.PersistedField;
+import data.entities.IEntity;
+import data.entities.IField;
+import data.managers.BasicDAOTest.Row;
+import data.managers.RowSorter.SortKey;
+import data.wrappers.DefaultWrapper;
+import data.wrappers.Wrapper;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Belkin Sergei
+ */
+public class RowSorterTest {
+
+    private BasicDAO<Row> dataObject;
+    private RowSorter<Row> sorter;
+
+    @PersistedEntity( "ITEMS" )
+    public static class Item implements IEntity {
+
+        @PersistedField( "PRICE" )
+        private BigDecimal price;
+        @PersistedField( "DAY" )
+        private LocalDate day;
+        @PersistedField( "TIME" )
+        private LocalDateTime time;
+
+        public Item() {
+        }
+
+        public Item( BigDecimal price, LocalDate day, LocalDateTime time ) {
+            this.price = price;
+            this.day = day;
+            this.time = time;
+        }
+
+        public BigDecimal getPrice() {
+            return price;
+        }
+
+        public void setPrice( BigDecimal price ) {
+            this.price = price;
+        }
+
+        public LocalDate getDay() {
+            return day;
+        }
+
+        public void setDay( LocalDate day ) {
+            this.day = day;
+        }
+
+        public LocalDateTime getTime() {
+            return time;
+        }
+
+        public void setTime( LocalDateTime time ) {
+            this.time = time;
+        }
+
+        @Override
+        public IField[] getFieldNames() {
+            return null;
+        }
+
+        @Override
+        public String getTableName() {
+            return null;
+        }
+
+    }
+
+    private static <E extends IEntity> BasicDAO<E> dao( Class<E> cls ) {
+        DefaultWrapper<E, E> wrapper = new DefaultWrapper<>();
+        wrapper.initProperties( cls );
+        return new BasicDAO<E>() {
+            @Override
+            public Wrapper getWrapper() {
+                return wrapper;
+            }
+            @Override
+            public Class<?> getWrapperClass() {
+                return cls;
+            }
+        };
+    }
+
+    @Before
+    public void setUp() {
+        dataObject = dao( Row.class );
+        sorter = new RowSorter<>( dataObject );
+    }
+
+    @Test
+    public void testSort() throws Exception {
+        final int count = 50000;
+        List<Row> rows = new ArrayList<>();
+        Random random = new Random( 1 );
+        for( int i = 0; i < count; i++ )
+            rows.add( new Row( i % 100 == 0 ? null : ( long ) random.nextInt( 1000 ) ) );
+        ObservableList<Row> data = dataObject.publish( new ArrayList<>( rows ) );
+        List<ListChangeListener.Change<? extends Row>> changes = new ArrayList<>();
+        data.addListener( ( ListChangeListener<Row> ) c -> {
+            while( c.next() ) assertTrue( c.wasPermutated() );
+            changes.add( c );
+        } );
+        int[] order = sorter.sort( SortKey.descending( "id" ) ).get();
+        assertEquals( 1, changes.size() );
+        for( int i = 1; i < count; i++ ) {
+            Long prev = data.get( i - 1 ).getId(), next = data.get( i ).getId();
+            assertTrue( next == null || prev != null && prev >= next );
+            //sort is stable
+            if( prev != null && prev.equals( next ) ) assertTrue( order[i - 1] < order[i] );
+            assertSame( rows.get( order[i] ), data.get( i ) );
+        }
+        assertNull( data.get( count - 1 ).getId() );
+        //permutation is not tracked as change of data
+        assertTrue( dataObject.getUpdatedItemsList().isEmpty() );
+        assertTrue( dataObject.getAddedItemsList().isEmpty() );
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        List<Row> rows = new ArrayList<>();
+        for( long i = 0; i < 20000; i++ ) rows.add( new Row( i ) );
+        dataObject.publish( rows );
+        List<Row> found = sorter.filter( "id", 100L, true, 200L, false ).get();
+        assertEquals( 100, found.size() );
+        assertEquals( 100L, ( long ) found.get( 0 ).getId() );
+        assertEquals( 199L, ( long ) found.get( 99 ).getId() );
+        assertEquals( 2, sorter.filter( "id", 19997.5, false, null, false ).get().size() );
+    }
+
+    @Test
+    public void testDecimalsAndDates() throws Exception {
+        BasicDAO<Item> items = dao( Item.class );
+        RowSorter<Item> itemSorter = new RowSorter<>( items );
+        LocalDateTime time = LocalDateTime.of( 2020, 1, 1, 0, 0 );
+        //prices are equal as doubles
+        Item a = new Item( new BigDecimal( "0.10000000000000000002" ), LocalDate.of( 2020, 1, 2 ), time.plusNanos( 1 ) );
+        Item b = new Item( new BigDecimal( "0.1" ), LocalDate.of( 2020, 1, 1 ), time );
+        Item c = new Item( new BigDecimal( "0.10000000000000000001" ), LocalDate.of( 2020, 1, 3 ), time.plusNanos( 2 ) );
+        Item d = new Item( null, null, null );
+        ObservableList<Item> data = items.publish( new ArrayList<>( Arrays.asList( a, b, c, d ) ) );
+        itemSorter.sort( SortKey.ascending( "price" ) ).get();
+        assertEquals( Arrays.asList( d, b, c, a ), data );
+        itemSorter.sort( SortKey.descending( "day" ) ).get();
+        assertEquals( Arrays.asList( c, a, b, d ), data );
+        itemSorter.sort( SortKey.ascending( "time" ) ).get();
+        assertEquals( Arrays.asList( d, b, a, c ), data );
+        assertEquals( Arrays.asList( a, c ), 
+                itemSorter.filter( "price", new BigDecimal( "0.1" ), false, null, false ).get() );
+        assertEquals( Arrays.asList( b, c ), 
+                itemSorter.filter( "price", null, false, new BigDecimal( "0.100000000000000000015" ), true ).get() );
+        assertEquals( Arrays.asList( b ), itemSorter.filter( "price", 0.1, true, 0.1, true ).get() );
+        assertEquals( Arrays.asList( b, a ), 
+                itemSorter.filter( "day", null, false, LocalDate.of( 2020, 1, 2 ), true ).get() );
+        assertEquals( Arrays.asList( a ), 
+                itemSorter.filter( "time", time, false, time.plusNanos( 2 ), false ).get() );
+    }
+
+    @Test
+    public void testChangedData() throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        sorter.setExecutor( tasks::add );
+        List<Row> rows = new ArrayList<>();
+        for( long i = 0; i < 10; i++ ) rows.add( new Row( 10 - i ) );
+        ObservableList<Row> data = dataObject.publish( rows );
+        CompletableFuture<int[]> result = sorter.sort( SortKey.ascending( "id" ) );
+        data.remove( 0 );
+        tasks.forEach( Runnable::run );
+        try {
+            result.get();
+            fail( "Data was changed." );
+        } catch( ExecutionException ex ) {
+            assertTrue( ex.getCause() instanceof ConcurrentModificationException );
+        }
+        assertEquals( 9L, ( long ) data.get( 0 ).getId() );
+    }
+
+}